@@ -8,14 +8,16 @@ package contactservice;
  * - Last name (max 10 chars, not null)
  * - Phone (exactly 10 digits, not null)
  * - Address (max 30 chars, not null)
+ * - Phone is stored packed into a long (see PhoneNumber)
  */
 
 public class Contact {
     private final String contactId;  // Final to prevent updates
     private String firstName;
     private String lastName;
-    private String phone;
+    private long phone;  // Packed ten-digit form, see PhoneNumber
     private String address;
+    private long createdAt;  // Set by ContactService when added, in epoch millis
 
     /**
      * Constructor for Contact object
@@ -27,6 +29,15 @@ public class Contact {
      * @throws IllegalArgumentException if any parameter violates requirements
      */
     public Contact(String contactId, String firstName, String lastName, String phone, String address) {
+        this(contactId, firstName, lastName, PhoneNumber.packDigits(phone), address);
+    }
+
+    /**
+     * Constructor for Contact object with an already packed phone number
+     * @param phone Packed phone number (see PhoneNumber)
+     * @throws IllegalArgumentException if any parameter violates requirements
+     */
+    Contact(String contactId, String firstName, String lastName, long phone, String address) {
         // Validate contactId
         if (contactId == null || contactId.length() > 10) {
             throw new IllegalArgumentException("Contact ID cannot be null and must be 10 characters or less");
@@ -42,8 +53,8 @@ public class Contact {
             throw new IllegalArgumentException("Last name cannot be null and must be 10 characters or less");
         }
 
-        // Validate phone (exactly 10 digits)
-        if (phone == null || phone.length() != 10 || !phone.matches("\\d{10}")) {
+        // Validate phone (packed records read back from disk skip packDigits)
+        if (!PhoneNumber.isValid(phone)) {
             throw new IllegalArgumentException("Phone number cannot be null and must be exactly 10 digits");
         }
 
@@ -73,9 +84,30 @@ public class Contact {
     }
 
     public String getPhone() {
+        return PhoneNumber.format(phone);
+    }
+
+    public PhoneNumber getPhoneNumber() {
+        return new PhoneNumber(phone);
+    }
+
+    /**
+     * Compares the stored phone number without formatting it
+     * @param phone Phone number to compare against
+     * @return true if the phone numbers are equal, false otherwise
+     */
+    public boolean hasPhone(PhoneNumber phone) {
+        return phone != null && phone.toLong() == this.phone;
+    }
+
+    long getPackedPhone() {
         return phone;
     }
 
+    long getCreatedAt() {
+        return createdAt;
+    }
+
     public String getAddress() {
         return address;
     }
@@ -96,10 +128,11 @@ public class Contact {
     }
 
     public void setPhone(String phone) {
-        if (phone == null || phone.length() != 10 || !phone.matches("\\d{10}")) {
-            throw new IllegalArgumentException("Phone number cannot be null and must be exactly 10 digits");
-        }
-        this.phone = phone;
+        this.phone = PhoneNumber.packDigits(phone);
+    }
+
+    public void setPhoneNumber(PhoneNumber phone) {
+        this.phone = packed(phone);
     }
 
     public void setAddress(String address) {
@@ -108,4 +141,25 @@ public class Contact {
         }
         this.address = address;
     }
+
+    void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Creates a detached copy of this contact
+     * @return A new Contact with the same fields
+     */
+    Contact copy() {
+        Contact copy = new Contact(contactId, firstName, lastName, phone, address);
+        copy.createdAt = createdAt;
+        return copy;
+    }
+
+    private static long packed(PhoneNumber phone) {
+        if (phone == null) {
+            throw new IllegalArgumentException("Phone number cannot be null and must be exactly 10 digits");
+        }
+        return phone.toLong();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package contactservice;
+
+/**
+ * ContactBackend interface for durable or replicated contact storage
+ * ContactService hands it coalesced records from its write-behind stage.
+ */
+public interface ContactBackend {
+
+    /**
+     * Stores the full current state of a contact, replacing any previous record
+     * @param contact Detached copy of the contact
+     */
+    void write(Contact contact);
+
+    /**
+     * Removes a contact's record; must tolerate IDs that were never written
+     * @param contactId The ID of the deleted contact
+     */
+    void delete(String contactId);
+}
@@ -0,0 +1,50 @@
+package contactservice;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ContactChanges class holding the net changes to a ContactService since a sequence
+ * Requirements:
+ * - Latest state of each contact added or updated since the sequence
+ * - IDs of contacts deleted since the sequence (tombstones)
+ * - The sequence to pass on the next sync
+ * - A full-resync flag when the requested sequence is too old to answer
+ *   incrementally, in which case every contact is returned
+ */
+public class ContactChanges {
+    private final long sequence;
+    private final List<Contact> changed;
+    private final List<String> deleted;
+    private final boolean fullResync;
+
+    /**
+     * Constructor for ContactChanges object
+     * @param sequence Sequence the changes bring a client up to
+     * @param changed Contacts added or updated
+     * @param deleted IDs of deleted contacts
+     * @param fullResync true if changed holds every contact and the client must replace its copy
+     */
+    ContactChanges(long sequence, List<Contact> changed, List<String> deleted, boolean fullResync) {
+        this.sequence = sequence;
+        this.changed = Collections.unmodifiableList(changed);
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.fullResync = fullResync;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<Contact> getChanged() {
+        return changed;
+    }
+
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    public boolean isFullResync() {
+        return fullResync;
+    }
+}
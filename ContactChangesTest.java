@@ -0,0 +1,235 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for ContactService delta sync (getChangesSince)
+ * Tests all requirements:
+ * 1. Every add, update and delete advances the sequence
+ * 2. Changes since a sequence hold the latest state per contact plus tombstones
+ * 3. Tombstones are compacted after the retention window
+ * 4. Stale or foreign sequences fall back to a full resync
+ * 5. Returned contacts are detached copies
+ * 6. Change sequences and tombstones survive a snapshot and reopen
+ */
+public class ContactChangesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ContactService contactService;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        contactService = new ContactService();
+        contactService.setClock(() -> now);
+        contactService.addContact(new Contact("1", "John", "Doe", "5551234567", "123 Main St"));
+        contactService.addContact(new Contact("2", "Jane", "Smith", "5559876543", "456 Oak Ave"));
+    }
+
+    // Sequence Tests
+    @Test
+    public void testSequenceAdvancesOnEveryChange() {
+        assertEquals(2, contactService.getSequence());
+
+        contactService.updateFirstName("1", "Johnny");
+        assertEquals(3, contactService.getSequence());
+
+        contactService.deleteContact("2");
+        assertEquals(4, contactService.getSequence());
+    }
+
+    @Test
+    public void testFailedChangeDoesNotAdvanceSequence() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.updateFirstName("999", "Johnny");
+        });
+
+        assertEquals(2, contactService.getSequence());
+    }
+
+    // Changes Since Tests
+    @Test
+    public void testChangesSinceStart() {
+        ContactChanges changes = contactService.getChangesSince(0);
+
+        assertFalse(changes.isFullResync());
+        assertEquals(2, changes.getSequence());
+        assertEquals(2, changes.getChanged().size());
+        assertTrue(changes.getDeleted().isEmpty());
+    }
+
+    @Test
+    public void testChangesSinceReturnsLatestStateOnce() {
+        long since = contactService.getSequence();
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.updateLastName("1", "Doeson");
+        contactService.updatePhone("1", "5551111111");
+
+        ContactChanges changes = contactService.getChangesSince(since);
+
+        assertEquals(1, changes.getChanged().size());
+        Contact changed = changes.getChanged().get(0);
+        assertEquals("Johnny", changed.getFirstName());
+        assertEquals("Doeson", changed.getLastName());
+        assertEquals("5551111111", changed.getPhone());
+        assertEquals(since + 3, changes.getSequence());
+    }
+
+    @Test
+    public void testChangesSinceIncludesTombstones() {
+        long since = contactService.getSequence();
+
+        contactService.updateAddress("1", "1 Pine St");
+        contactService.deleteContact("1");
+        contactService.addContact(new Contact("3", "Bob", "Johnson", "5555555555", "789 Pine St"));
+
+        ContactChanges changes = contactService.getChangesSince(since);
+
+        assertEquals(Collections.singletonList("1"), changes.getDeleted());
+        assertEquals(1, changes.getChanged().size());
+        assertEquals("3", changes.getChanged().get(0).getContactId());
+    }
+
+    @Test
+    public void testReAddAfterDeleteIsAChange() {
+        long since = contactService.getSequence();
+
+        contactService.deleteContact("1");
+        contactService.addContact(new Contact("1", "New", "Doe", "5551234567", "123 Main St"));
+
+        ContactChanges changes = contactService.getChangesSince(since);
+
+        assertTrue(changes.getDeleted().isEmpty());
+        assertEquals("New", changes.getChanged().get(0).getFirstName());
+    }
+
+    @Test
+    public void testChangedContactsAreDetached() {
+        long since = contactService.getSequence();
+        contactService.updateFirstName("1", "Johnny");
+
+        contactService.getChangesSince(since).getChanged().get(0).setFirstName("Mutated");
+        contactService.getChangesSince(0).getChanged().get(0).setFirstName("Mutated");
+        contactService.getChangesSince(100).getChanged().get(0).setFirstName("Mutated");
+
+        assertEquals("Johnny", contactService.getContact("1").getFirstName());
+        assertEquals("Jane", contactService.getContact("2").getFirstName());
+        assertEquals(since + 1, contactService.getSequence());
+    }
+
+    @Test
+    public void testNoChangesSinceLatest() {
+        ContactChanges changes = contactService.getChangesSince(contactService.getSequence());
+
+        assertFalse(changes.isFullResync());
+        assertTrue(changes.getChanged().isEmpty());
+        assertTrue(changes.getDeleted().isEmpty());
+    }
+
+    @Test
+    public void testNegativeSequence() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getChangesSince(-1);
+        });
+    }
+
+    // Tombstone Retention Tests
+    @Test
+    public void testTombstonesCompactedAfterRetention() {
+        contactService.setTombstoneRetention(1000);
+        long since = contactService.getSequence();
+
+        contactService.deleteContact("1");
+        now += 500;
+        assertEquals(Arrays.asList("1"), contactService.getChangesSince(since).getDeleted());
+
+        now += 500;
+        ContactChanges changes = contactService.getChangesSince(since);
+
+        // The tombstone is gone, so a client this far behind must resync
+        assertTrue(changes.isFullResync());
+        assertEquals(1, changes.getChanged().size());
+        assertEquals("2", changes.getChanged().get(0).getContactId());
+
+        // Clients that already saw the delete still sync incrementally
+        assertFalse(contactService.getChangesSince(changes.getSequence()).isFullResync());
+    }
+
+    @Test
+    public void testInvalidTombstoneRetention() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.setTombstoneRetention(-1);
+        });
+    }
+
+    @Test
+    public void testSequenceFromTheFutureNeedsResync() {
+        assertTrue(contactService.getChangesSince(100).isFullResync());
+    }
+
+    // Snapshot Tests
+    @Test
+    public void testSnapshotKeepsSequence() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        contactService.saveSnapshot(file);
+
+        try (ContactService restored = new ContactService(ContactSnapshot.open(file))) {
+            assertEquals(2, restored.getSequence());
+            assertFalse(restored.getChangesSince(0).isFullResync());
+            assertEquals(2, restored.getChangesSince(0).getChanged().size());
+            assertFalse(restored.getChangesSince(2).isFullResync());
+
+            restored.updateFirstName("2", "Janet");
+            ContactChanges changes = restored.getChangesSince(2);
+            assertEquals("Janet", changes.getChanged().get(0).getFirstName());
+            assertEquals(3, changes.getSequence());
+        }
+    }
+
+    @Test
+    public void testSnapshotKeepsChangeSequencesAndTombstones() throws IOException {
+        contactService.setTombstoneRetention(1000);
+        contactService.addContact(new Contact("3", "Bob", "Johnson", "5555555555", "789 Pine St"));
+        contactService.updateFirstName("1", "Johnny");
+        contactService.deleteContact("2");
+        Path file = tempDir.resolve("contacts.snap");
+        contactService.saveSnapshot(file);
+
+        try (ContactService restored = new ContactService(ContactSnapshot.open(file))) {
+            restored.setClock(() -> now);
+            restored.setTombstoneRetention(1000);
+            assertEquals(5, restored.getSequence());
+
+            // Only what changed after the client's sequence comes back
+            ContactChanges changes = restored.getChangesSince(3);
+            assertFalse(changes.isFullResync());
+            assertEquals(Collections.singletonList("2"), changes.getDeleted());
+            assertEquals(1, changes.getChanged().size());
+            assertEquals("Johnny", changes.getChanged().get(0).getFirstName());
+
+            changes = restored.getChangesSince(2);
+            assertEquals(2, changes.getChanged().size());
+            assertEquals("3", changes.getChanged().get(0).getContactId());
+
+            // Changes made after reopening follow the snapshot's contacts
+            restored.updateAddress("3", "1 Elm St");
+            changes = restored.getChangesSince(3);
+            assertEquals(2, changes.getChanged().size());
+            assertEquals("1 Elm St", changes.getChanged().get(1).getAddress());
+
+            // The restored tombstone still expires on schedule
+            now += 1000;
+            assertTrue(restored.getChangesSince(3).isFullResync());
+        }
+    }
+}
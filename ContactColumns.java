@@ -0,0 +1,271 @@
+package contactservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * ContactColumns class holding a column-oriented copy of a set of contacts
+ * Each field lives in its own array (phone as packed longs), so a predicate
+ * only touches the column it tests. Scans split the rows into fixed-size
+ * chunks that run in parallel; within a chunk each predicate narrows a
+ * selection vector of row indices before any result is materialized.
+ *
+ * The copy is kept current one row at a time: a changed contact overwrites
+ * its row, a new one is appended and a removed one is replaced by the last
+ * row, so row order is not stable.
+ *
+ * Rows normally share their field strings with contacts held in memory; a
+ * row copied from a contact that is not (one still in a snapshot or spilled
+ * to disk) owns its strings, and getFootprint counts them.
+ */
+class ContactColumns {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int MIN_CAPACITY = 16;
+
+    // Four String references and the packed phone per allocated row, in five arrays
+    private static final int ROW_SLOT = 4 * ContactFootprint.REFERENCE + Long.BYTES;
+    private static final int COLUMN_ARRAYS = 5 * ContactFootprint.ARRAY_HEADER;
+
+    // Row map entry and its boxed row number per used row
+    static final int ROW_ENTRY = ContactFootprint.MAP_ENTRY
+            + ContactFootprint.align(ContactFootprint.OBJECT_HEADER + Integer.BYTES);
+
+    private final Map<String, Integer> rows;  // Contact ID to row
+    private String[] contactIds;
+    private String[] firstNames;
+    private String[] lastNames;
+    private long[] phones;
+    private String[] addresses;
+    private final BitSet owned = new BitSet();  // Rows whose strings no stored contact holds
+    private long ownedBytes;
+    private int size;
+
+    /**
+     * Constructor for empty columns
+     * @param expectedRows Number of rows to allocate up front
+     */
+    ContactColumns(int expectedRows) {
+        int capacity = Math.max(MIN_CAPACITY, expectedRows);
+        this.rows = new HashMap<>(capacity * 4 / 3 + 1);
+        this.contactIds = new String[capacity];
+        this.firstNames = new String[capacity];
+        this.lastNames = new String[capacity];
+        this.phones = new long[capacity];
+        this.addresses = new String[capacity];
+    }
+
+    /**
+     * Copies a contact's current fields into its row, appending a row for a new ID
+     * @param contact The added or changed contact
+     * @param ownsFields true if no contact held in memory shares the strings
+     */
+    void set(Contact contact, boolean ownsFields) {
+        Integer row = rows.get(contact.getContactId());
+        if (row == null) {
+            if (size == contactIds.length) {
+                grow();
+            }
+            row = size++;
+            rows.put(contact.getContactId(), row);
+        } else if (owned.get(row)) {
+            ownedBytes -= fieldBytes(row);
+        }
+
+        contactIds[row] = contact.getContactId();
+        firstNames[row] = contact.getFirstName();
+        lastNames[row] = contact.getLastName();
+        phones[row] = contact.getPackedPhone();
+        addresses[row] = contact.getAddress();
+
+        owned.set(row, ownsFields);
+        if (ownsFields) {
+            ownedBytes += fieldBytes(row);
+        }
+    }
+
+    /**
+     * Removes a contact's row by moving the last row into its place
+     * @param contactId The ID of the removed contact
+     */
+    void remove(String contactId) {
+        Integer row = rows.remove(contactId);
+        if (row == null) {
+            return;
+        }
+
+        if (owned.get(row)) {
+            ownedBytes -= fieldBytes(row);
+        }
+
+        int last = --size;
+        if (row != last) {
+            contactIds[row] = contactIds[last];
+            firstNames[row] = firstNames[last];
+            lastNames[row] = lastNames[last];
+            phones[row] = phones[last];
+            addresses[row] = addresses[last];
+            owned.set(row, owned.get(last));
+            rows.put(contactIds[row], row);
+        }
+
+        owned.clear(last);
+        contactIds[last] = null;
+        firstNames[last] = null;
+        lastNames[last] = null;
+        addresses[last] = null;
+    }
+
+    /**
+     * Estimates the heap held by the columns: the arrays, the row map and
+     * the strings of rows that own them
+     * @return Estimated bytes
+     */
+    long getFootprint() {
+        return COLUMN_ARRAYS + contactIds.length * (long) ROW_SLOT + size * (long) ROW_ENTRY + ownedBytes;
+    }
+
+    /**
+     * Runs a query over all rows
+     * @param query The query to run
+     * @return Projected rows that match every predicate, at most the query limit
+     */
+    List<Map<ContactField, String>> scan(ContactQuery query) {
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        AtomicInteger matched = new AtomicInteger();
+
+        IntStream chunkIndexes = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            chunkIndexes = chunkIndexes.parallel();
+        }
+
+        List<List<Map<ContactField, String>>> parts = chunkIndexes
+                .mapToObj(chunk -> scanChunk(chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE), query, matched))
+                .collect(Collectors.toList());
+
+        List<Map<ContactField, String>> results = new ArrayList<>();
+        for (List<Map<ContactField, String>> part : parts) {
+            for (Map<ContactField, String> row : part) {
+                if (results.size() == query.getLimit()) {
+                    return results;
+                }
+                results.add(row);
+            }
+        }
+        return results;
+    }
+
+    private List<Map<ContactField, String>> scanChunk(int from, int to, ContactQuery query, AtomicInteger matched) {
+        // Early limit: skip the chunk once other chunks have found enough rows
+        if (matched.get() >= query.getLimit()) {
+            return new ArrayList<>();
+        }
+
+        int[] selection = new int[to - from];
+        int selected = 0;
+
+        if (query.hasPhonePrefix()) {
+            for (int row = from; row < to; row++) {
+                if (query.matchesPhonePrefix(phones[row])) {
+                    selection[selected++] = row;
+                }
+            }
+        } else {
+            for (int row = from; row < to; row++) {
+                selection[selected++] = row;
+            }
+        }
+
+        selected = filter(selection, selected, contactIds, query.getPredicate(ContactField.CONTACT_ID));
+        selected = filter(selection, selected, firstNames, query.getPredicate(ContactField.FIRST_NAME));
+        selected = filter(selection, selected, lastNames, query.getPredicate(ContactField.LAST_NAME));
+        selected = filter(selection, selected, addresses, query.getPredicate(ContactField.ADDRESS));
+        selected = filterPhone(selection, selected, query.getPredicate(ContactField.PHONE));
+
+        int remaining = query.getLimit() - matched.getAndAdd(selected);
+        int count = Math.max(0, Math.min(selected, remaining));
+
+        List<Map<ContactField, String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(project(selection[i], query));
+        }
+        return rows;
+    }
+
+    private static int filter(int[] selection, int selected, String[] column, Predicate<String> predicate) {
+        if (predicate == null) {
+            return selected;
+        }
+
+        int kept = 0;
+        for (int i = 0; i < selected; i++) {
+            int row = selection[i];
+            if (predicate.test(column[row])) {
+                selection[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    private int filterPhone(int[] selection, int selected, Predicate<String> predicate) {
+        if (predicate == null) {
+            return selected;
+        }
+
+        // Slow path: a general phone predicate needs the formatted digits
+        int kept = 0;
+        for (int i = 0; i < selected; i++) {
+            int row = selection[i];
+            if (predicate.test(PhoneNumber.format(phones[row]))) {
+                selection[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    private long fieldBytes(int row) {
+        return ContactFootprint.estimate(contactIds[row]) + ContactFootprint.estimate(firstNames[row])
+                + ContactFootprint.estimate(lastNames[row]) + ContactFootprint.estimate(addresses[row]);
+    }
+
+    private void grow() {
+        int capacity = contactIds.length * 2;
+        contactIds = Arrays.copyOf(contactIds, capacity);
+        firstNames = Arrays.copyOf(firstNames, capacity);
+        lastNames = Arrays.copyOf(lastNames, capacity);
+        phones = Arrays.copyOf(phones, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+    }
+
+    private Map<ContactField, String> project(int row, ContactQuery query) {
+        Map<ContactField, String> result = new EnumMap<>(ContactField.class);
+        for (ContactField field : query.getProjection()) {
+            switch (field) {
+                case CONTACT_ID:
+                    result.put(field, contactIds[row]);
+                    break;
+                case FIRST_NAME:
+                    result.put(field, firstNames[row]);
+                    break;
+                case LAST_NAME:
+                    result.put(field, lastNames[row]);
+                    break;
+                case PHONE:
+                    result.put(field, PhoneNumber.format(phones[row]));
+                    break;
+                default:
+                    result.put(field, addresses[row]);
+                    break;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,33 @@
+package contactservice;
+
+/**
+ * ContactField enum naming the five fields of a Contact
+ * Used by ContactQuery to attach predicates and choose projected fields.
+ */
+public enum ContactField {
+    CONTACT_ID,
+    FIRST_NAME,
+    LAST_NAME,
+    PHONE,
+    ADDRESS;
+
+    /**
+     * Reads this field from a contact
+     * @param contact The contact to read from
+     * @return The field value (phone as exactly 10 digits)
+     */
+    public String get(Contact contact) {
+        switch (this) {
+            case CONTACT_ID:
+                return contact.getContactId();
+            case FIRST_NAME:
+                return contact.getFirstName();
+            case LAST_NAME:
+                return contact.getLastName();
+            case PHONE:
+                return contact.getPhone();
+            default:
+                return contact.getAddress();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package contactservice;
+
+/**
+ * ContactFootprint class estimating the heap used by stored contacts
+ * Estimates assume a 64-bit JVM with compressed references (12-byte object
+ * headers, 4-byte references, 8-byte alignment) and compact strings, which
+ * store Latin-1 text in one byte per char and anything else in two.
+ */
+final class ContactFootprint {
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+
+    // Header, hash, coder, hashIsZero and the value reference
+    private static final int STRING_SHELL = align(OBJECT_HEADER + 4 + 1 + 1 + REFERENCE);
+
+    // Header, four String references, the packed phone and the creation time
+    static final int CONTACT_SHELL = align(OBJECT_HEADER + 4 * REFERENCE + 2 * Long.BYTES);
+
+    // HashMap.Node (header, hash, key, value, next) plus its table slot at a 0.75 load factor
+    static final int MAP_ENTRY = align(OBJECT_HEADER + 4 + 3 * REFERENCE) + 2 * REFERENCE;
+
+    // Boxed slot number held by the spill index for each spilled contact
+    static final int SPILL_ENTRY = MAP_ENTRY + align(OBJECT_HEADER + Integer.BYTES);
+
+    // Boxed packed phone kept as the previous value of a phone change
+    static final int BOXED_LONG = align(OBJECT_HEADER + Long.BYTES);
+
+    // TreeMap.Entry (header, key, value, left, right, parent, color)
+    private static final int TREE_ENTRY = align(OBJECT_HEADER + 5 * REFERENCE + 1);
+
+    // LinkedHashMap.Entry adds before and after links to HashMap.Node, plus its table slot
+    private static final int LINKED_MAP_ENTRY = align(OBJECT_HEADER + 4 + 5 * REFERENCE) + 2 * REFERENCE;
+
+    // Change tracking per ID: its sequence map entry and change log entry, sharing one boxed sequence
+    static final int CHANGE_ENTRY = MAP_ENTRY + TREE_ENTRY + BOXED_LONG;
+
+    private ContactFootprint() {
+    }
+
+    /**
+     * Estimates the heap held by one stored contact, including its map entry
+     * @param contact The contact to measure
+     * @return Estimated bytes
+     */
+    static long estimate(Contact contact) {
+        return MAP_ENTRY + CONTACT_SHELL
+                + estimate(contact.getContactId())
+                + estimate(contact.getFirstName())
+                + estimate(contact.getLastName())
+                + estimate(contact.getAddress());
+    }
+
+    /**
+     * Estimates the heap held for a contact that was spilled to disk
+     * Only the ID (as the index key) and the index entry stay in memory.
+     * @param contactId The spilled contact's ID
+     * @return Estimated bytes
+     */
+    static long estimateSpilled(String contactId) {
+        return SPILL_ENTRY + estimate(contactId);
+    }
+
+    /**
+     * Estimates the heap held by the tombstone of a deleted contact
+     * Covers the tombstone map entry, the boxed deletion time and the ID,
+     * which no Contact holds any more; the ID's CHANGE_ENTRY is separate.
+     * @param contactId The deleted contact's ID
+     * @return Estimated bytes
+     */
+    static long estimateTombstone(String contactId) {
+        return LINKED_MAP_ENTRY + BOXED_LONG + estimate(contactId);
+    }
+
+    /**
+     * Estimates the heap held by a string and its backing array
+     * @param value The string to measure
+     * @return Estimated bytes
+     */
+    static long estimate(String value) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return STRING_SHELL + align(ARRAY_HEADER + (long) value.length() * bytesPerChar);
+    }
+
+    static int align(long bytes) {
+        return (int) ((bytes + 7) & ~7L);
+    }
+}
@@ -0,0 +1,399 @@
+package contactservice;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * ContactHistory class keeping delta-encoded change history per contact
+ * Requirements:
+ * - Store one delta per field change: its time, the field and the previous value
+ * - Rebuild a contact as of any retained time by undoing newer deltas from
+ *   its current (or final, if deleted) state
+ * - Keep earlier lifetimes of an ID that was deleted and re-added
+ * - Prune deltas and deleted lifetimes older than a retention cutoff
+ *
+ * Contacts that were never changed or deleted have no entry: their creation
+ * time on the Contact itself is enough to answer as-of reads. The history
+ * can be written with writeTo and read back with read, so it survives a
+ * snapshot restart.
+ */
+class ContactHistory {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final ContactField[] FIELDS = ContactField.values();
+
+    // Header, two longs, the count and five references, plus the map entry holding it
+    private static final int VERSIONS_SHELL = ContactFootprint.align(ContactFootprint.OBJECT_HEADER
+            + 2 * Long.BYTES + Integer.BYTES + 5 * ContactFootprint.REFERENCE) + ContactFootprint.MAP_ENTRY;
+
+    // One time, field ordinal and value reference per delta, in three parallel arrays
+    private static final int DELTA_SLOT = Long.BYTES + 1 + ContactFootprint.REFERENCE;
+    private static final int DELTA_ARRAYS = 3 * ContactFootprint.ARRAY_HEADER;
+
+    private final Map<String, Versions> history = new HashMap<>();
+    private long horizon = Long.MIN_VALUE;  // As-of reads before this were pruned
+    private long footprint;
+
+    /**
+     * Versions of one lifetime of a contact ID, newest lifetime first
+     */
+    private static class Versions {
+        final long createdAt;
+        long deletedAt = Long.MAX_VALUE;
+        Contact finalState;  // Set once deleted
+        long[] times;
+        byte[] fields;
+        Object[] values;  // Previous values; String, or Long for the packed phone
+        int count;
+        Versions previous;  // Earlier lifetime of the same ID
+
+        Versions(long createdAt, Versions previous) {
+            this.createdAt = createdAt;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * Records a field change
+     * @param contact The contact after the change
+     * @param field The changed field
+     * @param previousValue The value before the change (String, or Long for the phone)
+     * @param now Time of the change in milliseconds
+     */
+    void changed(Contact contact, ContactField field, Object previousValue, long now) {
+        Versions versions = currentVersions(contact);
+
+        if (versions.times == null) {
+            versions.times = new long[INITIAL_CAPACITY];
+            versions.fields = new byte[INITIAL_CAPACITY];
+            versions.values = new Object[INITIAL_CAPACITY];
+            footprint += DELTA_ARRAYS + INITIAL_CAPACITY * (long) DELTA_SLOT;
+        } else if (versions.count == versions.times.length) {
+            int capacity = versions.count * 2;
+            versions.times = Arrays.copyOf(versions.times, capacity);
+            versions.fields = Arrays.copyOf(versions.fields, capacity);
+            versions.values = Arrays.copyOf(versions.values, capacity);
+            footprint += versions.count * (long) DELTA_SLOT;
+        }
+
+        versions.times[versions.count] = now;
+        versions.fields[versions.count] = (byte) field.ordinal();
+        versions.values[versions.count] = previousValue;
+        versions.count++;
+        footprint += valueFootprint(previousValue);
+    }
+
+    /**
+     * Records a deletion, keeping the contact's final state
+     * @param contact The contact being deleted
+     * @param now Time of the deletion in milliseconds
+     */
+    void deleted(Contact contact, long now) {
+        Versions versions = currentVersions(contact);
+        versions.deletedAt = now;
+        versions.finalState = contact.copy();
+        footprint += ContactFootprint.estimate(contact) - ContactFootprint.MAP_ENTRY;
+    }
+
+    /**
+     * Rebuilds a contact as of a time
+     * @param contactId The ID of the contact
+     * @param current The contact's current state, or null if it doesn't exist now
+     * @param asOf Time in milliseconds
+     * @return A detached Contact as it was at that time, or null if it didn't exist then
+     * @throws IllegalArgumentException if history for that time was pruned
+     */
+    Contact asOf(String contactId, Contact current, long asOf) {
+        if (asOf < horizon) {
+            throw new IllegalArgumentException("Contact history before " + horizon + " was pruned");
+        }
+
+        Versions versions = history.get(contactId);
+
+        // A re-added contact starts a lifetime that has no entry until it changes
+        if (current != null && (versions == null || versions.finalState != null)) {
+            if (asOf >= current.getCreatedAt()) {
+                return current.copy();
+            }
+        } else if (current != null) {
+            if (asOf >= versions.createdAt) {
+                return undo(current, versions, asOf);
+            }
+            versions = versions.previous;
+        }
+
+        for (; versions != null; versions = versions.previous) {
+            if (asOf >= versions.deletedAt) {
+                return null;
+            }
+            if (asOf >= versions.createdAt) {
+                return undo(versions.finalState, versions, asOf);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops deltas and deleted lifetimes that only matter before a cutoff
+     * @param cutoff Earliest time as-of reads must still answer
+     */
+    void prune(long cutoff) {
+        horizon = Math.max(horizon, cutoff);
+
+        Iterator<Versions> entries = history.values().iterator();
+        while (entries.hasNext()) {
+            Versions versions = entries.next();
+            Versions newest = versions;
+
+            // Lifetimes deleted at or before the cutoff are never visible again
+            Versions keep = null;
+            for (Versions lifetime = versions; lifetime != null; lifetime = lifetime.previous) {
+                if (lifetime.deletedAt <= cutoff) {
+                    dropLifetimes(lifetime);
+                    if (keep == null) {
+                        newest = null;
+                    } else {
+                        keep.previous = null;
+                    }
+                    break;
+                }
+                pruneDeltas(lifetime, cutoff);
+                keep = lifetime;
+            }
+
+            // A live contact with no retained changes needs no entry
+            if (newest == null) {
+                entries.remove();
+            } else if (newest.count == 0 && newest.finalState == null && newest.previous == null) {
+                dropLifetimes(newest);
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated heap held by the history
+     * @return Estimated bytes
+     */
+    long getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * Writes the history in the form read decodes
+     * @param out Destination
+     * @throws IOException if the write fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(horizon);
+        out.writeInt(history.size());
+        for (Map.Entry<String, Versions> entry : history.entrySet()) {
+            writeString(out, entry.getKey());
+
+            int lifetimes = 0;
+            for (Versions versions = entry.getValue(); versions != null; versions = versions.previous) {
+                lifetimes++;
+            }
+            out.writeInt(lifetimes);
+
+            for (Versions versions = entry.getValue(); versions != null; versions = versions.previous) {
+                out.writeLong(versions.createdAt);
+                out.writeLong(versions.deletedAt);
+                out.writeBoolean(versions.finalState != null);
+                if (versions.finalState != null) {
+                    writeString(out, versions.finalState.getFirstName());
+                    writeString(out, versions.finalState.getLastName());
+                    out.writeLong(versions.finalState.getPackedPhone());
+                    writeString(out, versions.finalState.getAddress());
+                }
+
+                out.writeInt(versions.count);
+                for (int i = 0; i < versions.count; i++) {
+                    out.writeLong(versions.times[i]);
+                    out.writeByte(versions.fields[i]);
+                    if (versions.values[i] instanceof Long) {
+                        out.writeLong((Long) versions.values[i]);
+                    } else {
+                        writeString(out, (String) versions.values[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a history written by writeTo
+     * @param buffer Buffer holding exactly one written history
+     * @return The decoded history
+     * @throws IllegalArgumentException if the buffer does not hold a valid history
+     */
+    static ContactHistory read(ByteBuffer buffer) {
+        ContactHistory decoded = new ContactHistory();
+        try {
+            decoded.horizon = buffer.getLong();
+            int entries = buffer.getInt();
+            for (int entry = 0; entry < entries; entry++) {
+                String contactId = readString(buffer);
+                int lifetimes = buffer.getInt();
+
+                Versions newest = null;
+                Versions newer = null;
+                for (int lifetime = 0; lifetime < lifetimes; lifetime++) {
+                    Versions versions = new Versions(buffer.getLong(), null);
+                    versions.deletedAt = buffer.getLong();
+                    if (buffer.get() != 0) {
+                        String firstName = readString(buffer);
+                        String lastName = readString(buffer);
+                        long phone = buffer.getLong();
+                        versions.finalState = new Contact(contactId, firstName, lastName, phone, readString(buffer));
+                        versions.finalState.setCreatedAt(versions.createdAt);
+                    }
+                    readDeltas(buffer, versions);
+
+                    if (newer == null) {
+                        newest = versions;
+                    } else {
+                        newer.previous = versions;
+                    }
+                    newer = versions;
+                }
+
+                if (newest == null || decoded.history.put(contactId, newest) != null) {
+                    throw new IllegalArgumentException("Corrupt contact history");
+                }
+                decoded.footprint += lifetimesFootprint(newest);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt contact history", e);
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Corrupt contact history");
+        }
+        return decoded;
+    }
+
+    private Versions currentVersions(Contact contact) {
+        Versions versions = history.get(contact.getContactId());
+        if (versions == null || versions.finalState != null) {
+            versions = new Versions(contact.getCreatedAt(), versions);
+            history.put(contact.getContactId(), versions);
+            footprint += VERSIONS_SHELL;
+        }
+        return versions;
+    }
+
+    private static Contact undo(Contact latest, Versions versions, long asOf) {
+        Contact contact = latest.copy();
+        for (int i = versions.count - 1; i >= 0 && versions.times[i] > asOf; i--) {
+            Object value = versions.values[i];
+            switch (FIELDS[versions.fields[i]]) {
+                case FIRST_NAME:
+                    contact.setFirstName((String) value);
+                    break;
+                case LAST_NAME:
+                    contact.setLastName((String) value);
+                    break;
+                case PHONE:
+                    contact.setPhoneNumber(new PhoneNumber((Long) value));
+                    break;
+                case ADDRESS:
+                    contact.setAddress((String) value);
+                    break;
+                default:
+                    throw new IllegalStateException("Contact ID cannot change");
+            }
+        }
+        return contact;
+    }
+
+    private void pruneDeltas(Versions versions, long cutoff) {
+        int dropped = 0;
+        while (dropped < versions.count && versions.times[dropped] <= cutoff) {
+            footprint -= valueFootprint(versions.values[dropped]);
+            dropped++;
+        }
+
+        if (dropped > 0) {
+            int remaining = versions.count - dropped;
+            System.arraycopy(versions.times, dropped, versions.times, 0, remaining);
+            System.arraycopy(versions.fields, dropped, versions.fields, 0, remaining);
+            System.arraycopy(versions.values, dropped, versions.values, 0, remaining);
+            Arrays.fill(versions.values, remaining, versions.count, null);
+            versions.count = remaining;
+        }
+    }
+
+    private void dropLifetimes(Versions versions) {
+        footprint -= lifetimesFootprint(versions);
+    }
+
+    // Heap held by a lifetime and every earlier one chained to it
+    private static long lifetimesFootprint(Versions versions) {
+        long bytes = 0;
+        for (; versions != null; versions = versions.previous) {
+            bytes += VERSIONS_SHELL;
+            if (versions.finalState != null) {
+                bytes += ContactFootprint.estimate(versions.finalState) - ContactFootprint.MAP_ENTRY;
+            }
+            if (versions.times != null) {
+                bytes += DELTA_ARRAYS + versions.times.length * (long) DELTA_SLOT;
+                for (int i = 0; i < versions.count; i++) {
+                    bytes += valueFootprint(versions.values[i]);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static void readDeltas(ByteBuffer buffer, Versions versions) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / (Long.BYTES + 1)) {
+            throw new IllegalArgumentException("Corrupt contact history");
+        }
+
+        if (count > 0) {
+            versions.times = new long[count];
+            versions.fields = new byte[count];
+            versions.values = new Object[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            versions.times[i] = buffer.getLong();
+            byte field = buffer.get();
+            if (field <= ContactField.CONTACT_ID.ordinal() || field >= FIELDS.length) {
+                throw new IllegalArgumentException("Corrupt contact history");
+            }
+            versions.fields[i] = field;
+            versions.values[i] = FIELDS[field] == ContactField.PHONE ? (Object) buffer.getLong() : readString(buffer);
+        }
+        versions.count = count;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeShort(value.length());
+        out.writeChars(value);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0 || length > buffer.remaining() / Character.BYTES) {
+            throw new IllegalArgumentException("Corrupt contact history");
+        }
+
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    private static long valueFootprint(Object value) {
+        return value instanceof String ? ContactFootprint.estimate((String) value) : ContactFootprint.BOXED_LONG;
+    }
+}
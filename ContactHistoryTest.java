@@ -0,0 +1,267 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for ContactService change history (getContact as of a time)
+ * Tests all requirements:
+ * 1. Past field values are rebuilt from per-field deltas
+ * 2. Deleted and re-added contacts keep their earlier history
+ * 3. Retention pruning drops old versions and rejects older reads
+ * 4. History costs less memory than keeping full copies
+ * 5. History and its pruning horizon survive a snapshot restart
+ */
+public class ContactHistoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ContactService contactService;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        now = 1000;
+        contactService = new ContactService();
+        contactService.setClock(() -> now);
+        contactService.addContact(new Contact("1", "John", "Doe", "5551234567", "123 Main St"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        contactService.close();
+    }
+
+    // As-Of Read Tests
+    @Test
+    public void testAsOfBeforeAnyChange() {
+        now = 2000;
+        Contact contact = contactService.getContact("1", 1500);
+
+        assertEquals("John", contact.getFirstName());
+        assertNotSame(contactService.getContact("1"), contact);
+    }
+
+    @Test
+    public void testAsOfRebuildsEachVersion() {
+        now = 2000;
+        contactService.updateFirstName("1", "Johnny");
+        now = 3000;
+        contactService.updatePhone("1", "5559999999");
+        now = 4000;
+        contactService.updateAddress("1", "1 Pine St");
+        contactService.updateLastName("1", "Doeson");
+
+        Contact original = contactService.getContact("1", 1999);
+        assertEquals("John", original.getFirstName());
+        assertEquals("Doe", original.getLastName());
+        assertEquals("5551234567", original.getPhone());
+        assertEquals("123 Main St", original.getAddress());
+
+        Contact middle = contactService.getContact("1", 3000);
+        assertEquals("Johnny", middle.getFirstName());
+        assertEquals("5559999999", middle.getPhone());
+        assertEquals("123 Main St", middle.getAddress());
+
+        Contact latest = contactService.getContact("1", 4000);
+        assertEquals("1 Pine St", latest.getAddress());
+        assertEquals("Doeson", latest.getLastName());
+    }
+
+    @Test
+    public void testAsOfBeforeCreation() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getContact("1", 999);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getContact("999", 1000);
+        });
+    }
+
+    @Test
+    public void testAsOfDeletedContact() {
+        now = 2000;
+        contactService.updateFirstName("1", "Johnny");
+        now = 3000;
+        contactService.deleteContact("1");
+
+        assertEquals("John", contactService.getContact("1", 1500).getFirstName());
+        assertEquals("Johnny", contactService.getContact("1", 2500).getFirstName());
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getContact("1", 3000);
+        });
+    }
+
+    @Test
+    public void testAsOfReAddedContact() {
+        now = 2000;
+        contactService.deleteContact("1");
+        now = 3000;
+        contactService.addContact(new Contact("1", "Again", "Doe", "5551234567", "123 Main St"));
+        now = 4000;
+        contactService.updateFirstName("1", "Later");
+
+        assertEquals("John", contactService.getContact("1", 1500).getFirstName());
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getContact("1", 2500);
+        });
+        assertEquals("Again", contactService.getContact("1", 3500).getFirstName());
+        assertEquals("Later", contactService.getContact("1", 4000).getFirstName());
+    }
+
+    // Retention Tests
+    @Test
+    public void testPruneDropsOldVersions() {
+        contactService.setHistoryRetention(1000);
+        now = 2000;
+        contactService.updateFirstName("1", "Johnny");
+        long withHistory = contactService.getHistoryFootprint();
+        assertTrue(withHistory > 0);
+
+        now = 5000;
+        contactService.pruneHistory();
+
+        assertEquals(0, contactService.getHistoryFootprint());
+        assertEquals("Johnny", contactService.getContact("1", 4000).getFirstName());
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getContact("1", 1500);
+        });
+    }
+
+    @Test
+    public void testPruneKeepsVersionsInsideWindow() {
+        contactService.setHistoryRetention(1000);
+        now = 2000;
+        contactService.updateFirstName("1", "Johnny");
+        now = 2500;
+        contactService.pruneHistory();
+
+        assertEquals("John", contactService.getContact("1", 1500).getFirstName());
+    }
+
+    @Test
+    public void testPruneDropsDeletedContacts() {
+        contactService.setHistoryRetention(1000);
+        now = 2000;
+        contactService.deleteContact("1");
+        assertTrue(contactService.getHistoryFootprint() > 0);
+
+        now = 4000;
+        contactService.pruneHistory();
+
+        assertEquals(0, contactService.getHistoryFootprint());
+    }
+
+    @Test
+    public void testInvalidHistoryRetention() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.setHistoryRetention(0);
+        });
+    }
+
+    // Footprint Tests
+    @Test
+    public void testHistorySmallerThanFullCopies() {
+        for (int i = 0; i < 100; i++) {
+            now++;
+            contactService.updateFirstName("1", "Name" + i);
+        }
+
+        long fullCopies = 100 * contactService.getEstimatedFootprint("1");
+        assertTrue(contactService.getHistoryFootprint() * 3 < fullCopies);
+    }
+
+    @Test
+    public void testUnchangedUpdateNotRecorded() {
+        contactService.updateFirstName("1", "John");
+
+        assertEquals(0, contactService.getHistoryFootprint());
+    }
+
+    // Snapshot Tests
+    @Test
+    public void testCreationTimeSurvivesSnapshot() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        contactService.saveSnapshot(file);
+
+        try (ContactService restored = new ContactService(ContactSnapshot.open(file))) {
+            assertEquals("John", restored.getContact("1", 1000).getFirstName());
+            assertThrows(IllegalArgumentException.class, () -> {
+                restored.getContact("1", 999);
+            });
+        }
+    }
+
+    @Test
+    public void testHistorySurvivesSnapshot() throws IOException {
+        contactService.addContact(new Contact("2", "Jane", "Smith", "5559876543", "456 Oak Ave"));
+        now = 2000;
+        contactService.updateFirstName("1", "Jack");
+        contactService.updatePhone("1", "5550000000");
+        now = 2500;
+        contactService.deleteContact("2");
+        now = 2600;
+        contactService.addContact(new Contact("2", "Janet", "Smith", "5559876543", "456 Oak Ave"));
+
+        now = 3000;
+        Path file = tempDir.resolve("contacts.snap");
+        contactService.saveSnapshot(file);
+
+        try (ContactService restored = new ContactService(ContactSnapshot.open(file))) {
+            Contact before = restored.getContact("1", 1500);
+            assertEquals("John", before.getFirstName());
+            assertEquals("5551234567", before.getPhone());
+            assertEquals("Jack", restored.getContact("1", 2000).getFirstName());
+            assertEquals("5550000000", restored.getContact("1", 2000).getPhone());
+
+            // The deleted lifetime of "2" is restored along with the current one
+            assertEquals("Jane", restored.getContact("2", 2200).getFirstName());
+            assertThrows(IllegalArgumentException.class, () -> {
+                restored.getContact("2", 2550);
+            });
+            assertEquals("Janet", restored.getContact("2", 2700).getFirstName());
+            assertTrue(restored.getHistoryFootprint() > 0);
+        }
+    }
+
+    @Test
+    public void testPruningSurvivesSnapshot() throws IOException {
+        now = 2000;
+        contactService.updateFirstName("1", "Jack");
+        now = 3000;
+        contactService.setHistoryRetention(500);
+        contactService.pruneHistory();
+
+        Path file = tempDir.resolve("contacts.snap");
+        contactService.saveSnapshot(file);
+
+        try (ContactService restored = new ContactService(ContactSnapshot.open(file))) {
+            assertEquals("Jack", restored.getContact("1", 2500).getFirstName());
+            assertThrows(IllegalArgumentException.class, () -> {
+                restored.getContact("1", 1500);
+            });
+        }
+    }
+
+    @Test
+    public void testTruncatedHistoryRejected() throws IOException {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        new ContactHistory().writeTo(new DataOutputStream(written));
+        byte[] bytes = written.toByteArray();
+
+        assertNotNull(ContactHistory.read(ByteBuffer.wrap(bytes)));
+        assertThrows(IllegalArgumentException.class, () -> {
+            ContactHistory.read(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+        });
+    }
+}
@@ -0,0 +1,270 @@
+package contactservice;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * ContactIdFilter class implementing a counting Bloom filter over contact IDs
+ * Requirements:
+ * - Answer "definitely not present" without touching the contact store
+ * - Support removal so deleted contacts stop matching (4-bit counters)
+ * - Sized from an expected contact count and a target false-positive rate
+ * - Report its memory cost in total and per contact
+ *
+ * Counters saturate at 15 and are never decremented once saturated, so a
+ * heavily colliding slot can only cause extra false positives, never a false
+ * negative.
+ *
+ * A filter written with writeTo can be wrapped read-only over a mapped
+ * buffer, so a snapshot's filter is usable without copying its counters.
+ */
+public class ContactIdFilter {
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = 64 / COUNTER_BITS;
+    private static final long COUNTER_MASK = 0xFL;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Double.BYTES;
+
+    private final LongBuffer counters;
+    private final int counterCount;
+    private final int hashCount;
+    private final int capacity;
+    private final double falsePositiveRate;
+    private int size;
+
+    /**
+     * Constructor for ContactIdFilter object
+     * @param capacity Number of contact IDs the filter is sized for (must be positive)
+     * @param falsePositiveRate Target false-positive rate at capacity (between 0 and 1, exclusive)
+     * @throws IllegalArgumentException if any parameter violates requirements
+     */
+    public ContactIdFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Filter capacity must be positive");
+        }
+
+        if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1");
+        }
+
+        // Standard Bloom filter sizing: m = -n ln p / (ln 2)^2, k = m / n ln 2
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        m = Math.max(COUNTERS_PER_WORD, Math.min(m, Integer.MAX_VALUE - COUNTERS_PER_WORD));
+
+        this.counterCount = (int) m;
+        this.counters = LongBuffer.allocate(wordCount(counterCount));
+        this.hashCount = Math.max(1, (int) Math.round((double) counterCount / capacity * ln2));
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    private ContactIdFilter(LongBuffer counters, int counterCount, int hashCount, int capacity,
+            double falsePositiveRate, int size) {
+        this.counters = counters;
+        this.counterCount = counterCount;
+        this.hashCount = hashCount;
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.size = size;
+    }
+
+    /**
+     * Wraps a filter written by writeTo without copying its counters
+     * @param buffer Buffer holding exactly one written filter
+     * @return A filter that answers mightContain; add and remove throw ReadOnlyBufferException
+     * @throws IllegalArgumentException if the buffer does not hold a valid filter
+     */
+    static ContactIdFilter readOnly(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES) {
+            throw new IllegalArgumentException("Corrupt contact ID filter");
+        }
+
+        int counterCount = buffer.getInt(0);
+        int hashCount = buffer.getInt(4);
+        int capacity = buffer.getInt(8);
+        int size = buffer.getInt(12);
+        double falsePositiveRate = buffer.getDouble(16);
+        if (counterCount < COUNTERS_PER_WORD || hashCount <= 0 || capacity <= 0 || size < 0
+                || buffer.capacity() != serializedBytes(counterCount)) {
+            throw new IllegalArgumentException("Corrupt contact ID filter");
+        }
+
+        ByteBuffer words = buffer.duplicate();
+        words.position(HEADER_BYTES);
+        return new ContactIdFilter(words.slice().asLongBuffer().asReadOnlyBuffer(),
+                counterCount, hashCount, capacity, falsePositiveRate, size);
+    }
+
+    /**
+     * Records a contact ID in the filter
+     * @param contactId The ID to add (not null)
+     */
+    public void add(String contactId) {
+        long h1 = mix(contactId.hashCode());
+        long h2 = mix(h1) | 1L;
+
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(h1 + i * h2);
+            int counter = counterAt(index);
+            if (counter < COUNTER_MASK) {
+                setCounter(index, counter + 1);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes a contact ID previously recorded with add
+     * @param contactId The ID to remove (not null)
+     */
+    public void remove(String contactId) {
+        long h1 = mix(contactId.hashCode());
+        long h2 = mix(h1) | 1L;
+
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(h1 + i * h2);
+            int counter = counterAt(index);
+            // Saturated counters are sticky: we no longer know their true value
+            if (counter > 0 && counter < COUNTER_MASK) {
+                setCounter(index, counter - 1);
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Checks whether a contact ID may have been added
+     * @param contactId The ID to check
+     * @return false if the ID is definitely absent, true if it may be present
+     */
+    public boolean mightContain(String contactId) {
+        if (contactId == null) {
+            return false;
+        }
+
+        long h1 = mix(contactId.hashCode());
+        long h2 = mix(h1) | 1L;
+
+        for (int i = 0; i < hashCount; i++) {
+            if (counterAt(index(h1 + i * h2)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of IDs the filter was sized for
+     * @return Filter capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of IDs currently recorded
+     * @return Number of IDs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the false-positive rate the filter was configured for
+     * @return Target false-positive rate
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Estimates the false-positive rate at the current number of IDs
+     * @return Expected false-positive rate
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1.0 - Math.exp(-(double) hashCount * size / counterCount), hashCount);
+    }
+
+    /**
+     * Returns the number of hash functions applied per ID
+     * @return Number of hash functions
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Returns the memory used by the counter array
+     * @return Memory in bytes
+     */
+    public long getMemoryBytes() {
+        return (long) counters.capacity() * Long.BYTES;
+    }
+
+    /**
+     * Returns the number of bytes writeTo produces
+     * @return Serialized size in bytes
+     */
+    int getSerializedBytes() {
+        return serializedBytes(counterCount);
+    }
+
+    /**
+     * Writes the filter in the form readOnly wraps
+     * @param out Destination
+     * @throws IOException if the write fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(counterCount);
+        out.writeInt(hashCount);
+        out.writeInt(capacity);
+        out.writeInt(size);
+        out.writeDouble(falsePositiveRate);
+        for (int i = 0; i < counters.capacity(); i++) {
+            out.writeLong(counters.get(i));
+        }
+    }
+
+    /**
+     * Returns the memory cost per contact at the configured capacity
+     * @return Memory in bits per contact
+     */
+    public double getBitsPerContact() {
+        return getMemoryBytes() * 8.0 / capacity;
+    }
+
+    private int index(long hash) {
+        return (int) ((hash >>> 1) % counterCount);
+    }
+
+    private int counterAt(int index) {
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        return (int) ((counters.get(index / COUNTERS_PER_WORD) >>> shift) & COUNTER_MASK);
+    }
+
+    private void setCounter(int index, int value) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        counters.put(word, (counters.get(word) & ~(COUNTER_MASK << shift)) | ((long) value << shift));
+    }
+
+    private static int wordCount(int counterCount) {
+        return (counterCount + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD;
+    }
+
+    private static int serializedBytes(int counterCount) {
+        return HEADER_BYTES + wordCount(counterCount) * Long.BYTES;
+    }
+
+    // 64-bit finalizer from MurmurHash3 to spread the cached String hash code
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e53a23ab1L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,141 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ContactIdFilter class
+ * Tests all requirements:
+ * 1. No false negatives for added IDs
+ * 2. Removed IDs stop matching
+ * 3. False-positive rate stays near the configured target
+ * 4. Invalid sizing parameters are rejected
+ * 5. A written filter can be wrapped read-only
+ */
+public class ContactIdFilterTest {
+
+    // Membership Tests
+    @Test
+    public void testAddedIdsAlwaysMatch() {
+        ContactIdFilter filter = new ContactIdFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("id" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("id" + i));
+        }
+        assertEquals(1000, filter.size());
+    }
+
+    @Test
+    public void testEmptyFilterMatchesNothing() {
+        ContactIdFilter filter = new ContactIdFilter(100, 0.01);
+
+        assertFalse(filter.mightContain("1"));
+        assertFalse(filter.mightContain(null));
+    }
+
+    @Test
+    public void testRemovedIdStopsMatching() {
+        ContactIdFilter filter = new ContactIdFilter(100, 0.01);
+        filter.add("1");
+        filter.add("2");
+
+        filter.remove("1");
+
+        assertFalse(filter.mightContain("1"));
+        assertTrue(filter.mightContain("2"));
+        assertEquals(1, filter.size());
+    }
+
+    // False-Positive Rate Tests
+    @Test
+    public void testFalsePositiveRateNearTarget() {
+        ContactIdFilter filter = new ContactIdFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("in" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("out" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Allow generous slack over the 1% target
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    public void testMemoryCostReported() {
+        ContactIdFilter filter = new ContactIdFilter(1000, 0.01);
+
+        // ~9.6 counters per contact at 1%, 4 bits each
+        assertTrue(filter.getBitsPerContact() > 30 && filter.getBitsPerContact() < 50);
+        assertEquals(filter.getBitsPerContact() * 1000 / 8, filter.getMemoryBytes(), 0.001);
+    }
+
+    // Serialization Tests
+    @Test
+    public void testReadOnlyRoundTrip() throws IOException {
+        ContactIdFilter filter = new ContactIdFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("id" + i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        assertEquals(filter.getSerializedBytes(), bytes.size());
+
+        ContactIdFilter wrapped = ContactIdFilter.readOnly(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(1000, wrapped.size());
+        assertEquals(filter.getHashCount(), wrapped.getHashCount());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(wrapped.mightContain("id" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(filter.mightContain("out" + i), wrapped.mightContain("out" + i));
+        }
+
+        assertThrows(ReadOnlyBufferException.class, () -> {
+            wrapped.add("new");
+        });
+    }
+
+    @Test
+    public void testReadOnlyRejectsCorruptBuffer() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            ContactIdFilter.readOnly(ByteBuffer.allocate(8));
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            ContactIdFilter.readOnly(ByteBuffer.allocate(64));
+        });
+    }
+
+    // Sizing Validation Tests
+    @Test
+    public void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactIdFilter(0, 0.01);
+        });
+    }
+
+    @Test
+    public void testInvalidFalsePositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactIdFilter(100, 0.0);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactIdFilter(100, 1.0);
+        });
+    }
+}
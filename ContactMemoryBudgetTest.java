@@ -0,0 +1,272 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ContactService memory accounting and budgets
+ * Tests all requirements:
+ * 1. Estimated footprint per contact and in total, updated on every change
+ * 2. REJECT policy fails new contacts with a distinct error
+ * 3. SPILL policy moves cold contacts to disk and reads them back
+ * 4. Change tracking and tombstones count toward the footprint
+ * 5. Contact history counts toward the budget
+ * 6. The query copy counts toward the budget and is not kept under SPILL
+ */
+public class ContactMemoryBudgetTest {
+
+    private ContactService contactService;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        contactService = new ContactService();
+        contactService.setClock(() -> now);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        contactService.close();
+    }
+
+    private void addContacts(int count) {
+        for (int i = 0; i < count; i++) {
+            contactService.addContact(new Contact("c" + i, "First" + i, "Last" + i, "5551234567", i + " Oak St"));
+        }
+    }
+
+    // Footprint Tests
+    @Test
+    public void testFootprintTracksAddsAndDeletes() {
+        assertEquals(0, contactService.getEstimatedFootprint());
+
+        addContacts(3);
+        long total = contactService.getEstimatedFootprint("c0")
+                + contactService.getEstimatedFootprint("c1")
+                + contactService.getEstimatedFootprint("c2");
+        assertEquals(total, contactService.getEstimatedFootprint());
+
+        contactService.deleteContact("c0");
+        contactService.deleteContact("c1");
+        contactService.deleteContact("c2");
+
+        // Tombstones stay until compacted
+        assertTrue(contactService.getEstimatedFootprint() > 0);
+        contactService.setTombstoneRetention(0);
+        contactService.getChangesSince(0);
+        assertEquals(0, contactService.getEstimatedFootprint());
+    }
+
+    @Test
+    public void testFootprintCountsChangeTracking() {
+        Contact contact = new Contact("1", "John", "Doe", "5551234567", "123 Main St");
+        contactService.addContact(contact);
+
+        assertEquals(ContactFootprint.estimate(contact) + ContactFootprint.CHANGE_ENTRY,
+                contactService.getEstimatedFootprint("1"));
+        assertEquals(contactService.getEstimatedFootprint("1"), contactService.getEstimatedFootprint());
+
+        // Updates replace the contact's change entry rather than add one
+        contactService.updateFirstName("1", "Jack");
+        contactService.updateFirstName("1", "John");
+        assertEquals(ContactFootprint.estimate(contact) + ContactFootprint.CHANGE_ENTRY,
+                contactService.getEstimatedFootprint());
+
+        contactService.deleteContact("1");
+        assertEquals(ContactFootprint.CHANGE_ENTRY + ContactFootprint.estimateTombstone("1"),
+                contactService.getEstimatedFootprint());
+    }
+
+    @Test
+    public void testFootprintReflectsFieldSizes() {
+        contactService.addContact(new Contact("1", "Al", "Li", "5551234567", "1 A St"));
+        long small = contactService.getEstimatedFootprint("1");
+
+        contactService.updateAddress("1", "123456789012345678901234567890");
+
+        assertTrue(contactService.getEstimatedFootprint("1") > small);
+        assertEquals(contactService.getEstimatedFootprint("1"), contactService.getEstimatedFootprint());
+    }
+
+    @Test
+    public void testFootprintOfMissingContact() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getEstimatedFootprint("999");
+        });
+    }
+
+    // Reject Policy Tests
+    @Test
+    public void testRejectPolicyFailsNewContacts() {
+        addContacts(1);
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint() + 1, MemoryPolicy.REJECT);
+
+        assertThrows(MemoryBudgetExceededException.class, () -> {
+            contactService.addContact(new Contact("new", "John", "Doe", "5551234567", "123 Main St"));
+        });
+
+        assertEquals(1, contactService.getContactCount());
+        assertFalse(contactService.contactExists("new"));
+    }
+
+    @Test
+    public void testRejectPolicyAllowsAddAfterDelete() {
+        addContacts(2);
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint(), MemoryPolicy.REJECT);
+        contactService.setHistoryRetention(1000);
+
+        // The deleted contact's final state stays in history until pruned
+        contactService.deleteContact("c0");
+        now += 1000;
+        contactService.pruneHistory();
+        contactService.addContact(new Contact("c0", "First0", "Last0", "5551234567", "0 Oak St"));
+
+        assertEquals(2, contactService.getContactCount());
+    }
+
+    @Test
+    public void testRejectPolicyCountsHistory() {
+        addContacts(2);
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint() + 1000, MemoryPolicy.REJECT);
+        contactService.addContact(new Contact("fits", "John", "Doe", "5551234567", "123 Main St"));
+        contactService.deleteContact("fits");
+
+        for (int i = 0; i < 20; i++) {
+            contactService.updateAddress("c0", i + " Elm Street");
+        }
+
+        assertTrue(contactService.getHistoryFootprint() > 0);
+        assertThrows(MemoryBudgetExceededException.class, () -> {
+            contactService.addContact(new Contact("fits", "John", "Doe", "5551234567", "123 Main St"));
+        });
+    }
+
+    @Test
+    public void testRejectPolicyCountsQueryColumns() {
+        addContacts(10);
+        Contact fits = new Contact("fits", "John", "Doe", "5551234567", "123 Main St");
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint() + 500, MemoryPolicy.REJECT);
+        assertTrue(ContactFootprint.estimate(fits) + ContactFootprint.CHANGE_ENTRY <= 500);
+
+        // Without the query copy the contact would fit
+        assertEquals(10, contactService.query(new ContactQuery()).size());
+        assertTrue(contactService.getQueryFootprint() > 0);
+        assertThrows(MemoryBudgetExceededException.class, () -> {
+            contactService.addContact(fits);
+        });
+    }
+
+    // Spill Policy Tests
+    @Test
+    public void testSpillPolicyKeepsFootprintUnderBudget() {
+        addContacts(10);
+        long budget = contactService.getEstimatedFootprint() * 2;
+        contactService.setMemoryBudget(budget, MemoryPolicy.SPILL);
+
+        // Change tracking cannot be spilled, so leave room for it
+        for (int i = 10; i < 30; i++) {
+            contactService.addContact(new Contact("c" + i, "First" + i, "Last" + i, "5551234567", i + " Oak St"));
+        }
+
+        assertTrue(contactService.getEstimatedFootprint() <= budget);
+        assertTrue(contactService.getSpilledCount() > 0);
+        assertEquals(30, contactService.getContactCount());
+    }
+
+    @Test
+    public void testFootprintLookupDoesNotChangeSpillOrder() {
+        addContacts(3);
+        contactService.setMemoryBudget(Long.MAX_VALUE / 2, MemoryPolicy.SPILL);
+        contactService.getContact("c1");
+        contactService.getContact("c2");
+
+        // c0 is least recently used; reading its footprint must not make it recent
+        contactService.getEstimatedFootprint("c0");
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint() - 1, MemoryPolicy.SPILL);
+
+        assertEquals(1, contactService.getSpilledCount());
+        assertEquals(ContactFootprint.estimateSpilled("c0") + ContactFootprint.CHANGE_ENTRY,
+                contactService.getEstimatedFootprint("c0"));
+    }
+
+    @Test
+    public void testSpillPolicyCountsHistory() {
+        addContacts(10);
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint(), MemoryPolicy.SPILL);
+        assertEquals(0, contactService.getSpilledCount());
+
+        // Same length, so only the history grows
+        contactService.updateAddress("c9", "9 Elm St");
+
+        assertTrue(contactService.getSpilledCount() > 0);
+        assertTrue(contactService.getEstimatedFootprint() + contactService.getHistoryFootprint()
+                <= contactService.getMemoryBudget());
+    }
+
+    @Test
+    public void testSpilledContactsReadBack() {
+        contactService.setMemoryBudget(1, MemoryPolicy.SPILL);
+        addContacts(10);
+
+        assertEquals(9, contactService.getSpilledCount());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(contactService.contactExists("c" + i));
+            Contact contact = contactService.getContact("c" + i);
+            assertEquals("First" + i, contact.getFirstName());
+            assertEquals(i + " Oak St", contact.getAddress());
+        }
+        assertEquals(10, contactService.query(new ContactQuery()).size());
+    }
+
+    @Test
+    public void testSpillReleasesQueryColumns() {
+        addContacts(1000);
+        assertEquals(1000, contactService.query(new ContactQuery()).size());
+        long columns = contactService.getQueryFootprint();
+        assertTrue(columns > 1000 * ContactColumns.ROW_ENTRY);
+
+        contactService.setMemoryBudget(contactService.getEstimatedFootprint() * 3 / 4, MemoryPolicy.SPILL);
+
+        assertEquals(0, contactService.getQueryFootprint());
+        assertTrue(contactService.getSpilledCount() > 500);
+
+        // Queries still see spilled contacts but keep nothing in memory afterwards
+        List<Map<ContactField, String>> rows = contactService.query(new ContactQuery()
+                .where(ContactField.FIRST_NAME, "First0"::equals));
+        assertEquals("0 Oak St", rows.get(0).get(ContactField.ADDRESS));
+        assertEquals(0, contactService.getQueryFootprint());
+        assertTrue(contactService.getSpilledCount() > 500);
+        assertTrue(contactService.getEstimatedFootprint() <= contactService.getMemoryBudget());
+    }
+
+    @Test
+    public void testUpdateAndDeleteSpilledContacts() {
+        contactService.setMemoryBudget(1, MemoryPolicy.SPILL);
+        addContacts(5);
+
+        contactService.updateFirstName("c0", "Updated");
+        contactService.deleteContact("c1");
+
+        assertEquals("Updated", contactService.getContact("c0").getFirstName());
+        assertFalse(contactService.contactExists("c1"));
+        assertEquals(4, contactService.getContactCount());
+    }
+
+    // Budget Validation Tests
+    @Test
+    public void testInvalidMemoryBudget() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.setMemoryBudget(0, MemoryPolicy.REJECT);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.setMemoryBudget(1000, null);
+        });
+
+        assertEquals(Long.MAX_VALUE, contactService.getMemoryBudget());
+    }
+}
@@ -0,0 +1,123 @@
+package contactservice;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * ContactQuery class describing a filtered, projected scan over contacts
+ * Requirements:
+ * - Predicates on any of the five contact fields, all of which must match
+ * - Phone prefix matching on the packed phone without formatting it
+ * - Optional limit on the number of results
+ * - Projection so only the selected fields are materialized
+ *
+ * Example: contacts whose address contains "Oak" and whose phone starts with 555
+ * <pre>
+ * new ContactQuery()
+ *     .where(ContactField.ADDRESS, address -> address.contains("Oak"))
+ *     .wherePhoneStartsWith("555")
+ *     .select(ContactField.CONTACT_ID, ContactField.LAST_NAME)
+ * </pre>
+ */
+public class ContactQuery {
+    private final Map<ContactField, Predicate<String>> predicates = new EnumMap<>(ContactField.class);
+    private long phonePrefix = -1;
+    private long phoneDivisor = 1;
+    private int limit = Integer.MAX_VALUE;
+    private Set<ContactField> projection = EnumSet.allOf(ContactField.class);
+
+    /**
+     * Adds a predicate on a field; multiple predicates are combined with AND
+     * @param field The field to test
+     * @param predicate Condition the field value must satisfy
+     * @return This query
+     * @throws IllegalArgumentException if field or predicate is null
+     */
+    public ContactQuery where(ContactField field, Predicate<String> predicate) {
+        if (field == null || predicate == null) {
+            throw new IllegalArgumentException("Field and predicate cannot be null");
+        }
+
+        predicates.merge(field, predicate, Predicate::and);
+        return this;
+    }
+
+    /**
+     * Restricts results to phone numbers starting with the given digits
+     * @param prefix Leading digits (1 to 10 digits)
+     * @return This query
+     * @throws IllegalArgumentException if prefix is null, empty, too long or not digits
+     */
+    public ContactQuery wherePhoneStartsWith(String prefix) {
+        long value = prefix == null || prefix.isEmpty() ? -1 : PhoneNumber.packPrefix(prefix);
+        if (value < 0) {
+            throw new IllegalArgumentException("Phone prefix must be 1 to 10 digits");
+        }
+
+        this.phonePrefix = value;
+        this.phoneDivisor = PhoneNumber.prefixDivisor(prefix.length());
+        return this;
+    }
+
+    /**
+     * Caps the number of results; the scan stops once enough matches are found
+     * Which of the matching contacts are returned is unspecified.
+     * @param limit Maximum number of results (must be positive)
+     * @return This query
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public ContactQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Chooses the fields to materialize in each result
+     * @param fields Fields to return (at least one)
+     * @return This query
+     * @throws IllegalArgumentException if no fields are given
+     */
+    public ContactQuery select(ContactField... fields) {
+        if (fields == null || fields.length == 0) {
+            throw new IllegalArgumentException("At least one field must be selected");
+        }
+
+        Set<ContactField> selected = EnumSet.noneOf(ContactField.class);
+        for (ContactField field : fields) {
+            if (field == null) {
+                throw new IllegalArgumentException("Selected field cannot be null");
+            }
+            selected.add(field);
+        }
+
+        this.projection = selected;
+        return this;
+    }
+
+    Predicate<String> getPredicate(ContactField field) {
+        return predicates.get(field);
+    }
+
+    boolean hasPhonePrefix() {
+        return phonePrefix >= 0;
+    }
+
+    boolean matchesPhonePrefix(long packedPhone) {
+        return packedPhone / phoneDivisor == phonePrefix;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    Set<ContactField> getProjection() {
+        return projection;
+    }
+}
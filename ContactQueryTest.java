@@ -0,0 +1,170 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ContactQuery and ContactService.query
+ * Tests all requirements:
+ * 1. Predicates on each field, combined with AND
+ * 2. Phone prefix matching
+ * 3. Limits and projections
+ * 4. Results reflect changes made through the service
+ */
+public class ContactQueryTest {
+
+    private ContactService contactService;
+
+    @BeforeEach
+    public void setUp() {
+        contactService = new ContactService();
+        contactService.addContact(new Contact("1", "John", "Doe", "5551234567", "123 Oak St"));
+        contactService.addContact(new Contact("2", "Jane", "Smith", "5559876543", "456 Oak Ave"));
+        contactService.addContact(new Contact("3", "Bob", "Johnson", "6175550000", "789 Oak Rd"));
+        contactService.addContact(new Contact("4", "Alice", "Doe", "5550001111", "12 Pine St"));
+    }
+
+    private static Set<String> ids(List<Map<ContactField, String>> rows) {
+        Set<String> ids = new HashSet<>();
+        for (Map<ContactField, String> row : rows) {
+            ids.add(row.get(ContactField.CONTACT_ID));
+        }
+        return ids;
+    }
+
+    private static Set<String> setOf(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    // Predicate Tests
+    @Test
+    public void testQueryAllContacts() {
+        assertEquals(4, contactService.query(new ContactQuery()).size());
+    }
+
+    @Test
+    public void testQueryAddressAndPhonePrefix() {
+        List<Map<ContactField, String>> rows = contactService.query(new ContactQuery()
+                .where(ContactField.ADDRESS, address -> address.contains("Oak"))
+                .wherePhoneStartsWith("555"));
+
+        assertEquals(setOf("1", "2"), ids(rows));
+    }
+
+    @Test
+    public void testQueryCombinesPredicatesOnSameField() {
+        List<Map<ContactField, String>> rows = contactService.query(new ContactQuery()
+                .where(ContactField.LAST_NAME, last -> last.startsWith("Do"))
+                .where(ContactField.LAST_NAME, last -> last.endsWith("e")));
+
+        assertEquals(setOf("1", "4"), ids(rows));
+    }
+
+    @Test
+    public void testQueryGeneralPhonePredicate() {
+        List<Map<ContactField, String>> rows = contactService.query(new ContactQuery()
+                .where(ContactField.PHONE, phone -> phone.endsWith("0000")));
+
+        assertEquals(setOf("3"), ids(rows));
+    }
+
+    @Test
+    public void testQueryNoMatches() {
+        assertTrue(contactService.query(new ContactQuery()
+                .where(ContactField.FIRST_NAME, "Nobody"::equals)).isEmpty());
+    }
+
+    // Limit and Projection Tests
+    @Test
+    public void testQueryLimit() {
+        assertEquals(2, contactService.query(new ContactQuery().limit(2)).size());
+    }
+
+    @Test
+    public void testQueryProjection() {
+        List<Map<ContactField, String>> rows = contactService.query(new ContactQuery()
+                .where(ContactField.CONTACT_ID, "2"::equals)
+                .select(ContactField.FIRST_NAME, ContactField.PHONE));
+
+        assertEquals(1, rows.size());
+        assertEquals(2, rows.get(0).size());
+        assertEquals("Jane", rows.get(0).get(ContactField.FIRST_NAME));
+        assertEquals("5559876543", rows.get(0).get(ContactField.PHONE));
+    }
+
+    @Test
+    public void testQueryLargeParallelScanWithLimit() {
+        ContactService largeService = new ContactService();
+        for (int i = 0; i < 20000; i++) {
+            String phone = (i % 2 == 0 ? "555" : "617") + String.format("%07d", i);
+            largeService.addContact(new Contact("c" + i, "First", "Last", phone, i + " Oak St"));
+        }
+
+        assertEquals(10000, largeService.query(new ContactQuery().wherePhoneStartsWith("555")).size());
+        assertEquals(100, largeService.query(new ContactQuery().wherePhoneStartsWith("555").limit(100)).size());
+    }
+
+    // Invalid Query Tests
+    @Test
+    public void testInvalidQueryArguments() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactQuery().where(ContactField.ADDRESS, null);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactQuery().wherePhoneStartsWith("55a");
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactQuery().limit(0);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactQuery().select();
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.query(null);
+        });
+    }
+
+    // Consistency Tests
+    @Test
+    public void testQuerySeesServiceChanges() {
+        ContactQuery oakQuery = new ContactQuery().where(ContactField.ADDRESS, address -> address.contains("Oak"));
+        assertEquals(3, contactService.query(oakQuery).size());
+
+        contactService.updateAddress("4", "1 Oak Ln");
+        contactService.deleteContact("1");
+
+        assertEquals(setOf("2", "3", "4"), ids(contactService.query(oakQuery)));
+    }
+
+    @Test
+    public void testQueryColumnsUpdatedInPlace() {
+        ContactQuery all = new ContactQuery().select(ContactField.CONTACT_ID, ContactField.PHONE);
+        assertEquals(4, contactService.query(all).size());
+
+        // Deletes move the last row into the hole; adds reuse the freed capacity
+        contactService.deleteContact("2");
+        contactService.deleteContact("1");
+        contactService.addContact(new Contact("5", "Eve", "Stone", "6170000000", "5 Elm St"));
+        contactService.addContact(new Contact("1", "John", "Doe", "5551112222", "123 Oak St"));
+        contactService.updatePhone("4", "6171234567");
+
+        assertEquals(setOf("1", "3", "4", "5"), ids(contactService.query(all)));
+        assertEquals(setOf("1"), ids(contactService.query(new ContactQuery().wherePhoneStartsWith("555"))));
+        assertEquals(setOf("3", "4", "5"), ids(contactService.query(new ContactQuery().wherePhoneStartsWith("617"))));
+
+        for (int i = 0; i < 100; i++) {
+            contactService.addContact(new Contact("n" + i, "New", "Row", "5550000000", "1 Main St"));
+        }
+        assertEquals(104, contactService.query(all).size());
+    }
+}
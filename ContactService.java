@@ -1,7 +1,21 @@
 package contactservice;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 /**
  * ContactService class for managing Contact objects
@@ -9,32 +23,141 @@ import java.util.Map;
  * - Add contacts with unique ID
  * - Delete contacts per contact ID
  * - Update contact fields per contact ID (firstName, lastName, phone, address)
+ * - Answer lookups for missing IDs from a Bloom filter without touching the store
+ * - Run predicate queries as parallel scans over a column-oriented copy
+ * - Start from a memory-mapped snapshot, decoding contacts lazily on first
+ *   access and hydrating the rest in the background
+ * - Stamp every add, update and delete with a global sequence number and
+ *   return the net changes since a given sequence for delta sync
+ * - Optionally coalesce changes per contact in a write-behind stage before
+ *   they reach a backend, while in-process reads see every change at once
+ * - Track the estimated heap footprint of stored contacts and, under a
+ *   memory budget, reject new contacts or spill cold ones to local disk
+ * - Keep a delta-encoded history of field changes per contact and answer
+ *   reads as of a past time, pruning versions past a retention window
+ *
+ * All public methods are synchronized so background work can share the store.
  */
-public class ContactService {
-    private Map<String, Contact> contacts;
+public class ContactService implements AutoCloseable {
+    private static final int DEFAULT_EXPECTED_CONTACTS = 1024;
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    private static final int HYDRATION_BATCH = 1024;
+    private static final long DEFAULT_TOMBSTONE_RETENTION_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private Map<String, Contact> contacts;  // Overlay on top of the snapshot, if any
+    private ContactIdFilter idFilter;
+    private ContactColumns columns;  // Built by the first query, then updated row by row; never kept under SPILL
+
+    // Snapshot base: a record is resolved once it is hydrated into contacts or deleted
+    private ContactSnapshot base;
+    private BitSet baseResolved;
+    private int baseUnresolved;
+    private int hydrationCursor;
+    private ScheduledExecutorService background;  // Shared by hydration and write-behind flushing
+
+    // Change tracking: only the latest change per contact ID is kept
+    private long sequence;
+    private long compactedThrough;  // Syncs from before this need a full resync
+    private Map<String, Long> changeSequences = new HashMap<>();
+    private TreeMap<Long, String> changeLog = new TreeMap<>();
+    private Map<String, Long> tombstones = new LinkedHashMap<>();  // ID to deletion time, oldest first
+    private long tombstoneRetentionMillis = DEFAULT_TOMBSTONE_RETENTION_MILLIS;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private ContactWriteBehind writeBehind;
+    private ScheduledFuture<?> writeBehindFlusher;
+
+    // Memory accounting: estimated heap held by in-memory and spilled contacts
+    private long footprint;
+    private long memoryBudget = Long.MAX_VALUE;
+    private MemoryPolicy memoryPolicy = MemoryPolicy.REJECT;
+    private Map<String, Integer> spilled = new HashMap<>();  // ID to spill file slot
+    private ContactSpillFile spillFile;
+
+    private ContactHistory history = new ContactHistory();
+    private long historyRetentionMillis = Long.MAX_VALUE;  // Unbounded until configured
+    private ScheduledFuture<?> historyPruner;
 
     /**
      * Constructor initializes the contact storage
      */
     public ContactService() {
+        this(DEFAULT_EXPECTED_CONTACTS, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Constructor initializes the contact storage with a sized ID filter
+     * @param expectedContacts Number of contacts the ID filter is initially sized for (must be positive)
+     * @param falsePositiveRate Target false-positive rate of the ID filter (between 0 and 1, exclusive)
+     * @throws IllegalArgumentException if any parameter violates requirements
+     */
+    public ContactService(int expectedContacts, double falsePositiveRate) {
         this.contacts = new HashMap<>();
+        this.idFilter = new ContactIdFilter(expectedContacts, falsePositiveRate);
+    }
+
+    /**
+     * Constructor serves contacts from a snapshot immediately
+     * Contacts are decoded from the snapshot on first access, and a background
+     * thread hydrates the rest. Adds, updates and deletes go to an in-memory
+     * overlay; the snapshot file itself is never modified. Delta-sync state
+     * and contact history are restored from the snapshot.
+     * @param base Snapshot opened with ContactSnapshot.open
+     * @throws IllegalArgumentException if base is null
+     */
+    public ContactService(ContactSnapshot base) {
+        this(Math.max(DEFAULT_EXPECTED_CONTACTS, base == null ? 0 : base.size()), DEFAULT_FALSE_POSITIVE_RATE);
+        if (base == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null");
+        }
+
+        this.base = base;
+        this.baseResolved = new BitSet(base.size());
+        this.baseUnresolved = base.size();
+        this.sequence = base.getSequence();
+        this.compactedThrough = base.getCompactedThrough();
+        this.history = base.readHistory();
+
+        for (int i = 0; i < base.getTombstoneCount(); i++) {
+            String contactId = base.tombstoneIdAt(i);
+            Long deletedSequence = base.tombstoneSequenceAt(i);
+            tombstones.put(contactId, base.tombstoneDeletedAt(i));
+            changeSequences.put(contactId, deletedSequence);
+            changeLog.put(deletedSequence, contactId);
+            footprint += ContactFootprint.CHANGE_ENTRY + ContactFootprint.estimateTombstone(contactId);
+        }
+
+        if (baseUnresolved > 0) {
+            background().execute(this::hydrationStep);
+        }
     }
 
     /**
      * Adds a new contact to the service
      * @param contact Contact object to add
      * @throws IllegalArgumentException if contact ID already exists or contact is null
+     * @throws MemoryBudgetExceededException if the REJECT memory policy is in effect and the contact doesn't fit
      */
-    public void addContact(Contact contact) {
+    public synchronized void addContact(Contact contact) {
         if (contact == null) {
             throw new IllegalArgumentException("Contact cannot be null");
         }
 
-        if (contacts.containsKey(contact.getContactId())) {
+        if (contactExists(contact.getContactId())) {
             throw new IllegalArgumentException("Contact ID already exists: " + contact.getContactId());
         }
 
-        contacts.put(contact.getContactId(), contact);
+        long cost = ContactFootprint.estimate(contact) + addTrackingCost(contact.getContactId())
+                + (columns == null ? 0 : ContactColumns.ROW_ENTRY);
+        if (memoryPolicy == MemoryPolicy.REJECT && budgetedFootprint() + cost > memoryBudget) {
+            throw new MemoryBudgetExceededException("Memory budget of " + memoryBudget
+                    + " bytes reached, cannot add contact: " + contact.getContactId());
+        }
+
+        contact.setCreatedAt(clock.getAsLong());
+        storeContact(contact);
+        recordChange(contact);
+        enforceMemoryBudget();
     }
 
     /**
@@ -42,12 +165,15 @@ public class ContactService {
      * @param contactId The ID of the contact to delete
      * @throws IllegalArgumentException if contact ID doesn't exist
      */
-    public void deleteContact(String contactId) {
-        if (!contacts.containsKey(contactId)) {
+    public synchronized void deleteContact(String contactId) {
+        Contact contact = findContact(contactId);
+        if (contact == null) {
             throw new IllegalArgumentException("Contact ID not found: " + contactId);
         }
 
-        contacts.remove(contactId);
+        history.deleted(contact, clock.getAsLong());
+        removeStored(contactId);
+        recordDelete(contactId);
     }
 
     /**
@@ -56,9 +182,8 @@ public class ContactService {
      * @param firstName The new first name
      * @throws IllegalArgumentException if contact ID doesn't exist
      */
-    public void updateFirstName(String contactId, String firstName) {
-        Contact contact = getContact(contactId);
-        contact.setFirstName(firstName);
+    public synchronized void updateFirstName(String contactId, String firstName) {
+        update(contactId, ContactField.FIRST_NAME, contact -> contact.setFirstName(firstName));
     }
 
     /**
@@ -67,9 +192,8 @@ public class ContactService {
      * @param lastName The new last name
      * @throws IllegalArgumentException if contact ID doesn't exist
      */
-    public void updateLastName(String contactId, String lastName) {
-        Contact contact = getContact(contactId);
-        contact.setLastName(lastName);
+    public synchronized void updateLastName(String contactId, String lastName) {
+        update(contactId, ContactField.LAST_NAME, contact -> contact.setLastName(lastName));
     }
 
     /**
@@ -78,9 +202,18 @@ public class ContactService {
      * @param phone The new phone number
      * @throws IllegalArgumentException if contact ID doesn't exist
      */
-    public void updatePhone(String contactId, String phone) {
-        Contact contact = getContact(contactId);
-        contact.setPhone(phone);
+    public synchronized void updatePhone(String contactId, String phone) {
+        update(contactId, ContactField.PHONE, contact -> contact.setPhone(phone));
+    }
+
+    /**
+     * Updates the phone number of a contact from an already parsed value
+     * @param contactId The ID of the contact to update
+     * @param phone The new phone number, e.g. from PhoneNumber.parse("(555) 123 4567")
+     * @throws IllegalArgumentException if contact ID doesn't exist or phone is null
+     */
+    public synchronized void updatePhoneNumber(String contactId, PhoneNumber phone) {
+        update(contactId, ContactField.PHONE, contact -> contact.setPhoneNumber(phone));
     }
 
     /**
@@ -89,9 +222,8 @@ public class ContactService {
      * @param address The new address
      * @throws IllegalArgumentException if contact ID doesn't exist
      */
-    public void updateAddress(String contactId, String address) {
-        Contact contact = getContact(contactId);
-        contact.setAddress(address);
+    public synchronized void updateAddress(String contactId, String address) {
+        update(contactId, ContactField.ADDRESS, contact -> contact.setAddress(address));
     }
 
     /**
@@ -100,20 +232,66 @@ public class ContactService {
      * @return The Contact object
      * @throws IllegalArgumentException if contact ID doesn't exist
      */
-    public Contact getContact(String contactId) {
-        if (!contacts.containsKey(contactId)) {
+    public synchronized Contact getContact(String contactId) {
+        Contact contact = findContact(contactId);
+        if (contact == null) {
             throw new IllegalArgumentException("Contact ID not found: " + contactId);
         }
 
-        return contacts.get(contactId);
+        return contact;
+    }
+
+    /**
+     * Retrieves a contact as it was at a past time
+     * @param contactId The ID of the contact to retrieve
+     * @param asOfMillis Time in epoch milliseconds
+     * @return A detached copy of the contact's state at that time
+     * @throws IllegalArgumentException if the contact didn't exist then or that history was pruned
+     */
+    public synchronized Contact getContact(String contactId, long asOfMillis) {
+        Contact contact = history.asOf(contactId, findContact(contactId), asOfMillis);
+        if (contact == null) {
+            throw new IllegalArgumentException("Contact ID not found as of " + asOfMillis + ": " + contactId);
+        }
+
+        return contact;
+    }
+
+    /**
+     * Runs a query over all contacts
+     * Scans a column-oriented copy of the contacts that is built by the first
+     * query and then updated in place by each change made through this service;
+     * changes made directly on a Contact returned by getContact are not seen
+     * until the next service change to that contact. The copy counts toward
+     * the memory budget (see getQueryFootprint). Under the SPILL policy no copy
+     * is kept, since it would hold spilled contacts in memory: each query
+     * builds its own and reads spilled contacts back from disk.
+     * @param query The query to run
+     * @return One map per matching contact holding only the selected fields
+     * @throws IllegalArgumentException if query is null
+     */
+    public synchronized List<Map<ContactField, String>> query(ContactQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+
+        if (memoryPolicy == MemoryPolicy.SPILL) {
+            return buildColumns().scan(query);
+        }
+
+        if (columns == null) {
+            columns = buildColumns();
+        }
+
+        return columns.scan(query);
     }
 
     /**
      * Returns the number of contacts in the service
      * @return Number of contacts
      */
-    public int getContactCount() {
-        return contacts.size();
+    public synchronized int getContactCount() {
+        return contacts.size() + spilled.size() + baseUnresolved;
     }
 
     /**
@@ -121,7 +299,735 @@ public class ContactService {
      * @param contactId The ID to check
      * @return true if contact exists, false otherwise
      */
-    public boolean contactExists(String contactId) {
-        return contacts.containsKey(contactId);
+    public synchronized boolean contactExists(String contactId) {
+        // The filter never gives a false negative, so a miss skips the map entirely
+        return (idFilter.mightContain(contactId) && (contacts.containsKey(contactId) || spilled.containsKey(contactId)))
+                || baseRecord(contactId) >= 0;
+    }
+
+    /**
+     * Writes all contacts to a snapshot file that can later be opened with ContactSnapshot.open
+     * The file keeps each contact's change sequence, the unexpired tombstones
+     * and the contact history, so a service opened from it answers the same
+     * delta syncs and as-of reads.
+     * @param path Destination file, replaced atomically
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void saveSnapshot(Path path) throws IOException {
+        compactTombstones();
+        ContactSnapshot.write(contactsInChangeOrder(), this::changeSequenceOf, tombstones, history, sequence, compactedThrough, path);
+    }
+
+    /**
+     * Returns the sequence number of the latest change
+     * @return Latest sequence number (0 before any change)
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the net changes since a sequence number
+     * Each changed contact appears once as a detached copy of its latest
+     * state, and deleted contacts appear as tombstone IDs. Change sequences
+     * and tombstones survive saveSnapshot and reopening, so a restart does
+     * not force clients into a full resync. Cost scales with the number of changes,
+     * not the number of contacts. If tombstones the client may have missed were
+     * already compacted (or the sequence is not from this service), every
+     * contact is returned with the full-resync flag set.
+     * @param since Sequence from the client's previous sync (0 for a first sync)
+     * @return The changes and the sequence to pass next time
+     * @throws IllegalArgumentException if since is negative
+     */
+    public synchronized ContactChanges getChangesSince(long since) {
+        if (since < 0) {
+            throw new IllegalArgumentException("Sequence cannot be negative");
+        }
+
+        compactTombstones();
+
+        if (since < compactedThrough || since > sequence) {
+            List<Contact> all = allContacts();
+            all.replaceAll(Contact::copy);
+            return new ContactChanges(sequence, all, new ArrayList<>(), true);
+        }
+
+        List<Contact> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+
+        // Snapshot records are ordered by change sequence, and all of them predate changes made here
+        if (base != null) {
+            for (int record = base.firstRecordAfter(since); record < base.size(); record++) {
+                Contact contact = unchangedBaseContact(record);
+                if (contact != null) {
+                    changed.add(contact.copy());
+                }
+            }
+        }
+
+        for (String contactId : changeLog.tailMap(since, false).values()) {
+            if (tombstones.containsKey(contactId)) {
+                deleted.add(contactId);
+            } else {
+                changed.add(peekContact(contactId).copy());
+            }
+        }
+
+        return new ContactChanges(sequence, changed, deleted, false);
+    }
+
+    /**
+     * Sets how long tombstones for deleted contacts are kept for delta sync
+     * @param retentionMillis Retention window in milliseconds (must not be negative)
+     * @throws IllegalArgumentException if retentionMillis is negative
+     */
+    public synchronized void setTombstoneRetention(long retentionMillis) {
+        if (retentionMillis < 0) {
+            throw new IllegalArgumentException("Tombstone retention cannot be negative");
+        }
+
+        this.tombstoneRetentionMillis = retentionMillis;
+    }
+
+    /**
+     * Returns the number of snapshot contacts not yet decoded into memory
+     * @return Number of contacts still served from the snapshot
+     */
+    public synchronized int getUnhydratedCount() {
+        return baseUnresolved;
+    }
+
+    /**
+     * Enables a write-behind stage in front of a backend
+     * Changes to the same contact within the window are merged and reach the
+     * backend as one record holding the contact's state at flush time; deletes
+     * reach it as a delete. Once more than maxPending contacts are waiting, the
+     * oldest are flushed early. Reads through this service always see the
+     * latest change. Backend failures never fail the change that triggered
+     * the flush: the record stays pending, is retried on the next flush and
+     * is counted by getFailedWriteCount. Flushes read spilled and snapshot
+     * contacts in place, so they neither hydrate them nor change which
+     * contacts are spilled. Any previously configured stage is flushed first.
+     * @param backend Backend receiving the coalesced records
+     * @param windowMillis How long a change may stay pending (0 writes through immediately)
+     * @param maxPending Most contacts allowed to be pending at once (must be positive)
+     * @throws IllegalArgumentException if any parameter violates requirements
+     * @throws IllegalStateException if the previous stage still has writes its backend did not accept
+     */
+    public synchronized void setWriteBehind(ContactBackend backend, long windowMillis, int maxPending) {
+        ContactWriteBehind replacement = new ContactWriteBehind(backend, windowMillis, maxPending);
+        disableWriteBehind();
+
+        writeBehind = replacement;
+        if (windowMillis > 0) {
+            long period = Math.max(1, windowMillis / 2);
+            writeBehindFlusher = background().scheduleWithFixedDelay(this::flushExpiredWrites, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Flushes all pending writes and removes the write-behind stage
+     * @throws IllegalStateException if the backend did not accept every pending write; the stage stays enabled
+     */
+    public synchronized void disableWriteBehind() {
+        if (writeBehind != null) {
+            flushWrites();
+            if (writeBehind.getPendingCount() > 0) {
+                throw new IllegalStateException(writeBehind.getPendingCount()
+                        + " contact writes are still pending; the backend did not accept them");
+            }
+            writeBehindFlusher = cancel(writeBehindFlusher);
+            writeBehind = null;
+        }
+    }
+
+    /**
+     * Sends every pending write to the backend now
+     * Stops at the first backend failure; the remaining writes stay pending.
+     */
+    public synchronized void flushWrites() {
+        if (writeBehind != null) {
+            writeBehind.flushAll(this::peekContact);
+        }
+    }
+
+    /**
+     * Returns the number of contacts with writes waiting for the backend
+     * @return Number of pending contacts
+     */
+    public synchronized int getPendingWriteCount() {
+        return writeBehind == null ? 0 : writeBehind.getPendingCount();
+    }
+
+    /**
+     * Returns the number of changes received by the write-behind stage
+     * @return Number of changes
+     */
+    public synchronized long getReceivedWriteCount() {
+        return writeBehind == null ? 0 : writeBehind.getReceivedCount();
+    }
+
+    /**
+     * Returns the number of records sent to the backend by the write-behind stage
+     * @return Number of backend writes and deletes
+     */
+    public synchronized long getBackendWriteCount() {
+        return writeBehind == null ? 0 : writeBehind.getWrittenCount();
+    }
+
+    /**
+     * Returns the number of backend writes and deletes that failed and were left pending for retry
+     * @return Number of failed backend calls
+     */
+    public synchronized long getFailedWriteCount() {
+        return writeBehind == null ? 0 : writeBehind.getFailedCount();
+    }
+
+    /**
+     * Sets a memory budget for stored contacts, their history and the query copy
+     * The budget applies to getEstimatedFootprint() plus getHistoryFootprint()
+     * plus getQueryFootprint().
+     * With REJECT, addContact fails with MemoryBudgetExceededException once the
+     * budget would be exceeded. With SPILL, the least recently used contacts are
+     * written to a local spill file until the footprint is back under budget,
+     * and read back transparently on their next access. Contacts that are
+     * modified directly (not through this service) after being spilled lose
+     * those modifications. Background snapshot hydration pauses at the budget.
+     * Change tracking for delta sync and contact history count toward the
+     * budget but stay in memory, so under SPILL they can hold the footprint
+     * above the budget; setHistoryRetention bounds the history.
+     * @param budgetBytes Budget in estimated heap bytes (must be positive)
+     * @param policy What to do when the budget is reached (not null)
+     * @throws IllegalArgumentException if any parameter violates requirements
+     */
+    public synchronized void setMemoryBudget(long budgetBytes, MemoryPolicy policy) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("Memory policy cannot be null");
+        }
+
+        this.memoryBudget = budgetBytes;
+        this.memoryPolicy = policy;
+
+        if (policy == MemoryPolicy.SPILL) {
+            // Spilling needs least-recently-used order, which findContact keeps by re-inserting on access
+            if (!(contacts instanceof LinkedHashMap)) {
+                contacts = new LinkedHashMap<>(contacts);
+            }
+
+            // The query copy would keep spilled contacts' fields in memory
+            columns = null;
+        }
+
+        enforceMemoryBudget();
+        if (baseUnresolved > 0 && budgetedFootprint() < memoryBudget) {
+            background().execute(this::hydrationStep);
+        }
+    }
+
+    /**
+     * Returns the configured memory budget
+     * @return Budget in bytes (Long.MAX_VALUE when unbounded)
+     */
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the estimated heap held by stored contacts, updated live on every change
+     * Covers contacts in memory (fields, Contact objects and map entries), the
+     * in-memory index of spilled contacts, and change tracking for delta sync:
+     * the sequence entries of every changed contact and the tombstones of
+     * deleted ones until they are compacted. Contacts still served from a
+     * snapshot hold no heap.
+     * @return Estimated bytes
+     */
+    public synchronized long getEstimatedFootprint() {
+        return footprint;
+    }
+
+    /**
+     * Returns the estimated heap held for one contact, including its change tracking
+     * Does not count as an access for least-recently-used spilling.
+     * @param contactId The ID of the contact
+     * @return Estimated bytes (0 for a contact still served from a snapshot)
+     * @throws IllegalArgumentException if contact ID doesn't exist
+     */
+    public synchronized long getEstimatedFootprint(String contactId) {
+        long tracking = changeSequences.containsKey(contactId) ? ContactFootprint.CHANGE_ENTRY : 0;
+
+        Contact contact = idFilter.mightContain(contactId) ? contacts.get(contactId) : null;
+        if (contact != null) {
+            return ContactFootprint.estimate(contact) + tracking;
+        }
+
+        if (idFilter.mightContain(contactId) && spilled.containsKey(contactId)) {
+            return ContactFootprint.estimateSpilled(contactId) + tracking;
+        }
+
+        if (baseRecord(contactId) >= 0) {
+            return 0;
+        }
+
+        throw new IllegalArgumentException("Contact ID not found: " + contactId);
+    }
+
+    /**
+     * Returns the number of contacts currently spilled to disk
+     * @return Number of spilled contacts
+     */
+    public synchronized int getSpilledCount() {
+        return spilled.size();
+    }
+
+    /**
+     * Sets how long contact history is kept and starts pruning it in the background
+     * As-of reads older than the retention window fail once pruned.
+     * @param retentionMillis Retention window in milliseconds (must be positive)
+     * @throws IllegalArgumentException if retentionMillis is not positive
+     */
+    public synchronized void setHistoryRetention(long retentionMillis) {
+        if (retentionMillis <= 0) {
+            throw new IllegalArgumentException("History retention must be positive");
+        }
+
+        this.historyRetentionMillis = retentionMillis;
+        historyPruner = cancel(historyPruner);
+
+        long period = Math.max(1, retentionMillis / 10);
+        historyPruner = background().scheduleWithFixedDelay(this::pruneHistory, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops history older than the retention window now
+     */
+    public synchronized void pruneHistory() {
+        if (historyRetentionMillis != Long.MAX_VALUE) {
+            history.prune(clock.getAsLong() - historyRetentionMillis);
+        }
+    }
+
+    /**
+     * Returns the estimated heap held by contact history
+     * Counts toward the memory budget together with getEstimatedFootprint().
+     * @return Estimated bytes
+     */
+    public synchronized long getHistoryFootprint() {
+        return history.getFootprint();
+    }
+
+    /**
+     * Returns the estimated heap held by the column-oriented copy kept for queries
+     * Counts toward the memory budget together with getEstimatedFootprint().
+     * @return Estimated bytes (0 before the first query and under the SPILL policy)
+     */
+    public synchronized long getQueryFootprint() {
+        return columns == null ? 0 : columns.getFootprint();
+    }
+
+    /**
+     * Flushes pending writes, stops background work and deletes the spill file
+     * Background work and the spill file are released even if the flush fails.
+     * The service must not be used afterwards if any contacts were spilled.
+     * @throws IllegalStateException if the backend did not accept every pending write; those writes are lost
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            flushWrites();
+            if (getPendingWriteCount() > 0) {
+                throw new IllegalStateException(getPendingWriteCount()
+                        + " contact writes were lost on close; the backend did not accept them");
+            }
+        } finally {
+            if (background != null) {
+                background.shutdownNow();
+            }
+            if (spillFile != null) {
+                spillFile.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the memory used by the contact ID filter
+     * @return Memory in bytes
+     */
+    public synchronized long getIdFilterMemoryBytes() {
+        return idFilter.getMemoryBytes();
+    }
+
+    /**
+     * Returns the memory cost of the contact ID filter per contact it is sized for
+     * @return Memory in bits per contact
+     */
+    public synchronized double getIdFilterBitsPerContact() {
+        return idFilter.getBitsPerContact();
+    }
+
+    /**
+     * Estimates the false-positive rate of the contact ID filter at the current contact count
+     * @return Expected false-positive rate
+     */
+    public synchronized double getIdFilterFalsePositiveRate() {
+        return idFilter.getExpectedFalsePositiveRate();
+    }
+
+    synchronized void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    private void update(String contactId, ContactField field, Consumer<Contact> change) {
+        Contact contact = getContact(contactId);
+        long before = ContactFootprint.estimate(contact);
+        Object previous = field == ContactField.PHONE ? (Object) contact.getPackedPhone() : field.get(contact);
+
+        change.accept(contact);
+
+        Object updated = field == ContactField.PHONE ? (Object) contact.getPackedPhone() : field.get(contact);
+        if (!previous.equals(updated)) {
+            history.changed(contact, field, previous, clock.getAsLong());
+        }
+
+        footprint += ContactFootprint.estimate(contact) - before;
+        recordChange(contact);
+        enforceMemoryBudget();
+    }
+
+    private void recordChange(Contact contact) {
+        String contactId = contact.getContactId();
+        shareColumns(contact);
+        if (tombstones.remove(contactId) != null) {
+            footprint -= ContactFootprint.estimateTombstone(contactId);
+        }
+        stamp(contactId);
+        writeBehind(contactId);
+    }
+
+    private void recordDelete(String contactId) {
+        if (columns != null) {
+            columns.remove(contactId);
+        }
+        if (tombstones.remove(contactId) == null) {
+            footprint += ContactFootprint.estimateTombstone(contactId);
+        }
+        tombstones.put(contactId, clock.getAsLong());
+        stamp(contactId);
+        compactTombstones();
+        writeBehind(contactId);
+    }
+
+    private void writeBehind(String contactId) {
+        if (writeBehind != null) {
+            writeBehind.changed(contactId, clock.getAsLong(), this::peekContact);
+        }
+    }
+
+    // Failed writes stay pending, are counted by the stage and are retried on the next tick
+    private synchronized void flushExpiredWrites() {
+        if (writeBehind != null) {
+            writeBehind.flushExpired(clock.getAsLong(), this::peekContact);
+        }
+    }
+
+    private void stamp(String contactId) {
+        Long stamped = ++sequence;  // One box shared by both maps
+        Long previous = changeSequences.put(contactId, stamped);
+        if (previous != null) {
+            changeLog.remove(previous);
+        } else {
+            footprint += ContactFootprint.CHANGE_ENTRY;
+        }
+        changeLog.put(stamped, contactId);
+    }
+
+    // Heap the memory budget applies to: stored contacts, change tracking, history and the query copy
+    private long budgetedFootprint() {
+        return footprint + history.getFootprint() + (columns == null ? 0 : columns.getFootprint());
+    }
+
+    // Change-tracking heap an add costs: a new change entry, or less the tombstone it replaces
+    private long addTrackingCost(String contactId) {
+        if (!changeSequences.containsKey(contactId)) {
+            return ContactFootprint.CHANGE_ENTRY;
+        }
+        return tombstones.containsKey(contactId) ? -ContactFootprint.estimateTombstone(contactId) : 0;
+    }
+
+    private void compactTombstones() {
+        long cutoff = clock.getAsLong() - tombstoneRetentionMillis;
+
+        Iterator<Map.Entry<String, Long>> oldest = tombstones.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> tombstone = oldest.next();
+            if (tombstone.getValue() > cutoff) {
+                break;
+            }
+
+            long deletedSequence = changeSequences.remove(tombstone.getKey());
+            changeLog.remove(deletedSequence);
+            compactedThrough = Math.max(compactedThrough, deletedSequence);
+            footprint -= ContactFootprint.CHANGE_ENTRY + ContactFootprint.estimateTombstone(tombstone.getKey());
+            oldest.remove();
+        }
+    }
+
+    private Contact findContact(String contactId) {
+        if (idFilter.mightContain(contactId)) {
+            Contact contact = contacts.get(contactId);
+            if (contact != null) {
+                touch(contact);
+                return contact;
+            }
+
+            Integer slot = spilled.get(contactId);
+            if (slot != null) {
+                contact = unspill(contactId, slot);
+                enforceMemoryBudget();
+                return contact;
+            }
+        }
+
+        int record = baseRecord(contactId);
+        if (record < 0) {
+            return null;
+        }
+
+        Contact contact = hydrate(record);
+        enforceMemoryBudget();
+        return contact;
+    }
+
+    // Looks a contact up without hydrating, unspilling or reordering it, so flushes and syncs leave memory as it was
+    private Contact peekContact(String contactId) {
+        Contact contact = contacts.get(contactId);
+        if (contact != null) {
+            return contact;
+        }
+
+        Integer slot = spilled.get(contactId);
+        if (slot != null) {
+            return spillFile.read(slot);
+        }
+
+        int record = baseRecord(contactId);
+        return record < 0 ? null : base.contactAt(record);
+    }
+
+    // A snapshot record's contact, or null if it was changed or deleted through this service
+    private Contact unchangedBaseContact(int record) {
+        String contactId = base.contactIdAt(record);
+        if (changeSequences.containsKey(contactId)) {
+            return null;
+        }
+
+        // Null as well if deleted and its tombstone already compacted
+        return baseResolved.get(record) ? peekContact(contactId) : base.contactAt(record);
+    }
+
+    // Unchanged snapshot contacts in snapshot order, then changed ones in change order
+    private List<Contact> contactsInChangeOrder() {
+        List<Contact> ordered = new ArrayList<>(getContactCount());
+        if (base != null) {
+            for (int record = 0; record < base.size(); record++) {
+                Contact contact = unchangedBaseContact(record);
+                if (contact != null) {
+                    ordered.add(contact);
+                }
+            }
+        }
+
+        for (String contactId : changeLog.values()) {
+            if (!tombstones.containsKey(contactId)) {
+                ordered.add(peekContact(contactId));
+            }
+        }
+        return ordered;
+    }
+
+    private long changeSequenceOf(String contactId) {
+        Long changed = changeSequences.get(contactId);
+        return changed != null ? changed : base.changeSequenceAt(base.indexOf(contactId));
+    }
+
+    private void storeContact(Contact contact) {
+        contacts.put(contact.getContactId(), contact);
+        footprint += ContactFootprint.estimate(contact);
+        idFilter.add(contact.getContactId());
+
+        // Rebuild at twice the size once the filter is full so the false-positive rate holds
+        if (idFilter.size() > idFilter.getCapacity()) {
+            rebuildIdFilter(idFilter.getCapacity() * 2);
+        }
+    }
+
+    private boolean removeStored(String contactId) {
+        if (!idFilter.mightContain(contactId)) {
+            return false;
+        }
+
+        Contact removed = contacts.remove(contactId);
+        if (removed != null) {
+            footprint -= ContactFootprint.estimate(removed);
+        } else {
+            Integer slot = spilled.remove(contactId);
+            if (slot == null) {
+                return false;
+            }
+            spillFile.free(slot);
+            footprint -= ContactFootprint.estimateSpilled(contactId);
+        }
+
+        idFilter.remove(contactId);
+        return true;
+    }
+
+    // Moves a contact to the most recently used end of the spill order
+    private void touch(Contact contact) {
+        if (memoryPolicy == MemoryPolicy.SPILL) {
+            contacts.remove(contact.getContactId());
+            contacts.put(contact.getContactId(), contact);
+        }
+    }
+
+    private void enforceMemoryBudget() {
+        if (memoryPolicy != MemoryPolicy.SPILL) {
+            return;
+        }
+
+        // Keep the most recently used contact in memory; callers may hold it
+        Iterator<Contact> leastRecentlyUsed = contacts.values().iterator();
+        while (budgetedFootprint() > memoryBudget && contacts.size() > 1) {
+            Contact contact = leastRecentlyUsed.next();
+            if (spillFile == null) {
+                spillFile = new ContactSpillFile();
+            }
+
+            spilled.put(contact.getContactId(), spillFile.write(contact));
+            leastRecentlyUsed.remove();
+            footprint += ContactFootprint.estimateSpilled(contact.getContactId()) - ContactFootprint.estimate(contact);
+        }
+    }
+
+    private Contact unspill(String contactId, int slot) {
+        Contact contact = spillFile.read(slot);
+        spillFile.free(slot);
+        spilled.remove(contactId);
+
+        contacts.put(contactId, contact);
+        footprint += ContactFootprint.estimate(contact) - ContactFootprint.estimateSpilled(contactId);
+        shareColumns(contact);
+        return contact;
+    }
+
+    private int baseRecord(String contactId) {
+        if (baseUnresolved == 0) {
+            return -1;
+        }
+
+        int record = base.indexOf(contactId);
+        return record >= 0 && !baseResolved.get(record) ? record : -1;
+    }
+
+    private void resolveBaseRecord(int record) {
+        baseResolved.set(record);
+        baseUnresolved--;
+    }
+
+    private Contact hydrate(int record) {
+        Contact contact = base.contactAt(record);
+        resolveBaseRecord(record);
+        storeContact(contact);
+        shareColumns(contact);
+        return contact;
+    }
+
+    // Points a query row at the strings of a contact now held in memory, releasing its own copy
+    private void shareColumns(Contact contact) {
+        if (columns != null) {
+            columns.set(contact, false);
+        }
+    }
+
+    private void hydrationStep() {
+        synchronized (this) {
+            int hydrated = 0;
+            while (hydrated < HYDRATION_BATCH && baseUnresolved > 0 && budgetedFootprint() < memoryBudget) {
+                hydrationCursor = baseResolved.nextClearBit(hydrationCursor);
+                hydrate(hydrationCursor);
+                hydrated++;
+            }
+
+            // Release the lock between batches so requests are served meanwhile
+            if (baseUnresolved > 0 && budgetedFootprint() < memoryBudget && !background.isShutdown()) {
+                background.execute(this::hydrationStep);
+            }
+        }
+    }
+
+    private ScheduledExecutorService background() {
+        if (background == null || background.isShutdown()) {
+            background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "contact-service-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return background;
+    }
+
+    private static ScheduledFuture<?> cancel(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+        return null;
+    }
+
+    private void forEachContact(Consumer<Contact> action) {
+        contacts.values().forEach(action);
+        forEachUnheldContact(action);
+    }
+
+    // Spilled contacts and unhydrated snapshot contacts, decoded without keeping them
+    private void forEachUnheldContact(Consumer<Contact> action) {
+        for (int slot : spilled.values()) {
+            action.accept(spillFile.read(slot));
+        }
+
+        if (baseUnresolved > 0) {
+            for (int record = baseResolved.nextClearBit(0); record < base.size(); record = baseResolved.nextClearBit(record + 1)) {
+                action.accept(base.contactAt(record));
+            }
+        }
+    }
+
+    // Contacts not held in memory are copied into rows that own their strings
+    private ContactColumns buildColumns() {
+        ContactColumns built = new ContactColumns(getContactCount());
+        for (Contact contact : contacts.values()) {
+            built.set(contact, false);
+        }
+        forEachUnheldContact(contact -> built.set(contact, true));
+        return built;
+    }
+
+    private List<Contact> allContacts() {
+        List<Contact> all = new ArrayList<>(contacts.size() + spilled.size() + baseUnresolved);
+        forEachContact(all::add);
+        return all;
+    }
+
+    private void rebuildIdFilter(int capacity) {
+        ContactIdFilter rebuilt = new ContactIdFilter(capacity, idFilter.getFalsePositiveRate());
+        for (String contactId : contacts.keySet()) {
+            rebuilt.add(contactId);
+        }
+        for (String contactId : spilled.keySet()) {
+            rebuilt.add(contactId);
+        }
+        idFilter = rebuilt;
     }
 }
\ No newline at end of file
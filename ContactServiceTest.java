@@ -217,6 +217,15 @@ public class ContactServiceTest {
         assertEquals("5551234567", contactService.getContact("1").getPhone());
     }
 
+    @Test
+    public void testUpdatePhoneFromFormattedInput() {
+        contactService.addContact(testContact1);
+
+        contactService.updatePhoneNumber("1", PhoneNumber.parse("(555) 555-1234"));
+
+        assertEquals("5555551234", contactService.getContact("1").getPhone());
+    }
+
     // Update Address Tests
     @Test
     public void testUpdateAddressSuccess() {
@@ -286,6 +295,44 @@ public class ContactServiceTest {
         assertFalse(contactService.contactExists("999"));
     }
 
+    @Test
+    public void testContactExistsAfterFilterGrows() {
+        ContactService smallService = new ContactService(4, 0.01);
+        for (int i = 0; i < 100; i++) {
+            smallService.addContact(new Contact("c" + i, "John", "Doe", "5551234567", "123 Main St"));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(smallService.contactExists("c" + i));
+        }
+        assertFalse(smallService.contactExists("missing"));
+    }
+
+    @Test
+    public void testContactExistsFalseAfterDelete() {
+        contactService.addContact(testContact1);
+        contactService.deleteContact("1");
+
+        assertFalse(contactService.contactExists("1"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.getContact("1");
+        });
+    }
+
+    @Test
+    public void testIdFilterInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactService(0, 0.01);
+        });
+    }
+
+    @Test
+    public void testIdFilterMemoryReported() {
+        assertTrue(contactService.getIdFilterMemoryBytes() > 0);
+        assertTrue(contactService.getIdFilterBitsPerContact() > 0);
+        assertEquals(0.0, contactService.getIdFilterFalsePositiveRate(), 0.0);
+    }
+
     // Contact Count Tests
     @Test
     public void testContactCountEmpty() {
@@ -0,0 +1,516 @@
+package contactservice;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * ContactSnapshot class providing a memory-mapped, read-only contact file
+ * Requirements:
+ * - Open in near-constant time: nothing is read or decoded up front
+ * - Find a contact by ID through an on-disk hash index
+ * - Decode a single contact on demand
+ * - Rule out most missing IDs with a mapped Bloom filter before probing the index
+ * - Keep the delta-sync state of the service that wrote it: each contact's
+ *   change sequence and the tombstones still within their retention window
+ * - Keep the contact history of the service that wrote it, so as-of reads
+ *   give the same answers after a restart
+ *
+ * File layout (big-endian):
+ * - Header: magic, version, contact count, index slot count, ID filter size,
+ *   tombstone count, history size (7 ints), the change sequence the snapshot
+ *   was taken at and the sequence syncs must be at or after to avoid a full
+ *   resync (2 longs)
+ * - Index: open-addressing hash table of record numbers plus one (0 = empty)
+ * - Records: fixed-size, each string as a length byte followed by its
+ *   maximum number of UTF-16 chars, the phone as a packed long and the
+ *   contact's creation time in epoch millis; ordered by change sequence
+ * - Change sequences: one long per record, in record order
+ * - ID filter: a ContactIdFilter over every contact ID, as written by writeTo
+ * - Tombstones: fixed-size, the deleted ID in the record string format, then
+ *   its deletion time in epoch millis and its change sequence (2 longs)
+ * - History: a ContactHistory as written by writeTo
+ */
+public class ContactSnapshot {
+    private static final int MAGIC = 0x43534e50;  // "CSNP"
+    private static final int VERSION = 6;
+    private static final int HEADER_SIZE = 44;
+    private static final double ID_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final int ID_CHARS = 10;
+    private static final int NAME_CHARS = 10;
+    private static final int ADDRESS_CHARS = 30;
+
+    private static final int ID_OFFSET = 0;
+    private static final int FIRST_NAME_OFFSET = ID_OFFSET + 1 + ID_CHARS * 2;
+    private static final int LAST_NAME_OFFSET = FIRST_NAME_OFFSET + 1 + NAME_CHARS * 2;
+    private static final int PHONE_OFFSET = LAST_NAME_OFFSET + 1 + NAME_CHARS * 2;
+    private static final int ADDRESS_OFFSET = PHONE_OFFSET + Long.BYTES;
+    private static final int CREATED_AT_OFFSET = ADDRESS_OFFSET + 1 + ADDRESS_CHARS * 2;
+    static final int RECORD_SIZE = CREATED_AT_OFFSET + Long.BYTES;
+
+    private static final int DELETED_AT_OFFSET = 1 + ID_CHARS * 2;
+    private static final int DELETED_SEQUENCE_OFFSET = DELETED_AT_OFFSET + Long.BYTES;
+    private static final int TOMBSTONE_SIZE = DELETED_SEQUENCE_OFFSET + Long.BYTES;
+
+    // Records are mapped in segments so a snapshot is not limited to one 2GB mapping
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    // The index is mapped as one buffer, so its 4-byte slots must fit in 2GB
+    private static final int MAX_SLOTS = 1 << 28;
+
+    private final ByteBuffer index;
+    private final ByteBuffer[] segments;
+    private final LongBuffer changeSequences;
+    private final ContactIdFilter idFilter;
+    private final ByteBuffer tombstones;
+    private final ByteBuffer history;
+    private final int size;
+    private final int slotMask;
+    private final int tombstoneCount;
+    private final long sequence;
+    private final long compactedThrough;
+
+    private ContactSnapshot(ByteBuffer index, ByteBuffer[] segments, LongBuffer changeSequences, ContactIdFilter idFilter,
+            ByteBuffer tombstones, ByteBuffer history, int size, int slots, long sequence, long compactedThrough) {
+        this.index = index;
+        this.segments = segments;
+        this.changeSequences = changeSequences;
+        this.idFilter = idFilter;
+        this.tombstones = tombstones;
+        this.history = history;
+        this.size = size;
+        this.slotMask = slots - 1;
+        this.tombstoneCount = tombstones.capacity() / TOMBSTONE_SIZE;
+        this.sequence = sequence;
+        this.compactedThrough = compactedThrough;
+    }
+
+    /**
+     * Writes contacts to a snapshot file at change sequence 0, replacing it atomically
+     * @param contacts Contacts to write (IDs must be unique)
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if there are more than 2^27 contacts
+     */
+    public static void write(Collection<Contact> contacts, Path path) throws IOException {
+        write(contacts, 0, path);
+    }
+
+    /**
+     * Writes contacts to a snapshot file, replacing it atomically
+     * A service opened from the file answers delta syncs from this sequence
+     * on; older syncs get a full resync.
+     * @param contacts Contacts to write (IDs must be unique)
+     * @param sequence Change sequence the contacts reflect (see ContactService.getChangesSince)
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if there are more than 2^27 contacts
+     */
+    public static void write(Collection<Contact> contacts, long sequence, Path path) throws IOException {
+        write(contacts, contactId -> 0, Collections.emptyMap(), new ContactHistory(), sequence, sequence, path);
+    }
+
+    /**
+     * Writes contacts, delta-sync state and history to a snapshot file, replacing it atomically
+     * The file is forced to disk before it replaces path; if writing fails,
+     * path is left as it was and no temporary file remains.
+     * @param contacts Contacts to write, ordered by change sequence (IDs must be unique)
+     * @param changeSequence Change sequence of each contact and tombstone, by ID
+     * @param tombstones Deletion time of each deleted ID kept for delta sync, oldest first
+     * @param history Contact history to restore with the contacts
+     * @param sequence Change sequence the contacts reflect
+     * @param compactedThrough Syncs from before this sequence need a full resync
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if there are more than 2^27 contacts or they are out of order
+     */
+    static void write(Collection<Contact> contacts, ToLongFunction<String> changeSequence, Map<String, Long> tombstones,
+            ContactHistory history, long sequence, long compactedThrough, Path path) throws IOException {
+        int size = contacts.size();
+        int slots = slotCount(size);
+        int[] table = new int[slots];
+        long[] sequences = new long[size];
+        ContactIdFilter filter = new ContactIdFilter(Math.max(1, size), ID_FILTER_FALSE_POSITIVE_RATE);
+
+        int record = 0;
+        for (Contact contact : contacts) {
+            sequences[record] = changeSequence.applyAsLong(contact.getContactId());
+            if (record > 0 && sequences[record] < sequences[record - 1]) {
+                throw new IllegalArgumentException("Snapshot contacts must be ordered by change sequence");
+            }
+
+            int slot = spread(contact.getContactId().hashCode()) & (slots - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot] = ++record;
+            filter.add(contact.getContactId());
+        }
+
+        ByteArrayOutputStream historyBytes = new ByteArrayOutputStream();
+        history.writeTo(new DataOutputStream(historyBytes));
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                out.writeInt(slots);
+                out.writeInt(filter.getSerializedBytes());
+                out.writeInt(tombstones.size());
+                out.writeInt(historyBytes.size());
+                out.writeLong(sequence);
+                out.writeLong(compactedThrough);
+
+                for (int entry : table) {
+                    out.writeInt(entry);
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+                for (Contact contact : contacts) {
+                    writeRecord(buffer, 0, contact);
+                    out.write(buffer.array());
+                }
+
+                for (long changed : sequences) {
+                    out.writeLong(changed);
+                }
+
+                filter.writeTo(out);
+
+                ByteBuffer tombstone = ByteBuffer.allocate(TOMBSTONE_SIZE);
+                for (Map.Entry<String, Long> deleted : tombstones.entrySet()) {
+                    writeString(tombstone, 0, deleted.getKey(), ID_CHARS);
+                    tombstone.putLong(DELETED_AT_OFFSET, deleted.getValue());
+                    tombstone.putLong(DELETED_SEQUENCE_OFFSET, changeSequence.applyAsLong(deleted.getKey()));
+                    out.write(tombstone.array());
+                }
+
+                historyBytes.writeTo(out);
+
+                // The file must be on disk before the rename makes it the snapshot
+                out.flush();
+                channel.force(true);
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a snapshot file without reading its contents
+     * @param path Snapshot file written by write
+     * @return The mapped snapshot
+     * @throws IOException if the file cannot be mapped
+     * @throws IllegalArgumentException if the file is not a valid snapshot
+     */
+    public static ContactSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IllegalArgumentException("Not a contact snapshot: " + path);
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IllegalArgumentException("Not a contact snapshot: " + path);
+            }
+
+            int size = header.getInt(8);
+            int slots = header.getInt(12);
+            int filterBytes = header.getInt(16);
+            int tombstoneCount = header.getInt(20);
+            int historyBytes = header.getInt(24);
+            long sequence = header.getLong(28);
+            long compactedThrough = header.getLong(36);
+            long recordsStart = HEADER_SIZE + (long) slots * Integer.BYTES;
+            long sequencesStart = recordsStart + (long) size * RECORD_SIZE;
+            long filterStart = sequencesStart + (long) size * Long.BYTES;
+            long tombstonesStart = filterStart + filterBytes;
+            long historyStart = tombstonesStart + (long) tombstoneCount * TOMBSTONE_SIZE;
+            if (size < 0 || slots != slotCount(size) || filterBytes < 0 || tombstoneCount < 0 || historyBytes < 0
+                    || fileSize != historyStart + historyBytes) {
+                throw new IllegalArgumentException("Corrupt contact snapshot: " + path);
+            }
+
+            // Mappings stay valid after the channel is closed
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) slots * Integer.BYTES);
+            ByteBuffer[] segments = new ByteBuffer[(size + SEGMENT_MASK) >>> SEGMENT_SHIFT];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long count = Math.min(size - first, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, recordsStart + first * RECORD_SIZE, count * RECORD_SIZE);
+            }
+
+            LongBuffer changeSequences = channel.map(FileChannel.MapMode.READ_ONLY, sequencesStart, (long) size * Long.BYTES).asLongBuffer();
+            ContactIdFilter idFilter = ContactIdFilter.readOnly(channel.map(FileChannel.MapMode.READ_ONLY, filterStart, filterBytes));
+            ByteBuffer tombstones = channel.map(FileChannel.MapMode.READ_ONLY, tombstonesStart, (long) tombstoneCount * TOMBSTONE_SIZE);
+            ByteBuffer history = channel.map(FileChannel.MapMode.READ_ONLY, historyStart, historyBytes);
+            return new ContactSnapshot(index, segments, changeSequences, idFilter, tombstones, history, size, slots, sequence, compactedThrough);
+        }
+    }
+
+    /**
+     * Returns the number of contacts in the snapshot
+     * @return Number of contacts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the change sequence the snapshot was taken at
+     * @return Change sequence
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the sequence delta syncs must be at or after to avoid a full resync
+     * @return Compacted-through sequence
+     */
+    long getCompactedThrough() {
+        return compactedThrough;
+    }
+
+    /**
+     * Returns the change sequence of a record
+     * @param record Record number (0 to size - 1)
+     * @return Sequence of the contact's latest change when the snapshot was taken
+     */
+    long changeSequenceAt(int record) {
+        return changeSequences.get(record);
+    }
+
+    /**
+     * Finds the first record changed after a sequence
+     * Records are ordered by change sequence, so every record from the
+     * result on was changed after it.
+     * @param since Change sequence
+     * @return The first such record number, or size if there is none
+     */
+    int firstRecordAfter(long since) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (changeSequences.get(middle) <= since) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Decodes the contact history stored with the snapshot
+     * @return A new history holding every retained change and deleted lifetime
+     * @throws IllegalArgumentException if the stored history is corrupt
+     */
+    ContactHistory readHistory() {
+        return ContactHistory.read(history.duplicate());
+    }
+
+    /**
+     * Returns the number of tombstones stored with the snapshot
+     * @return Number of tombstones
+     */
+    int getTombstoneCount() {
+        return tombstoneCount;
+    }
+
+    /**
+     * Decodes the deleted contact ID of a tombstone
+     * @param tombstone Tombstone number (0 to getTombstoneCount() - 1), oldest first
+     * @return The deleted ID
+     */
+    String tombstoneIdAt(int tombstone) {
+        return readString(tombstones, tombstoneOffset(tombstone));
+    }
+
+    /**
+     * Returns the deletion time of a tombstone
+     * @param tombstone Tombstone number (0 to getTombstoneCount() - 1)
+     * @return Deletion time in epoch millis
+     */
+    long tombstoneDeletedAt(int tombstone) {
+        return tombstones.getLong(tombstoneOffset(tombstone) + DELETED_AT_OFFSET);
+    }
+
+    /**
+     * Returns the change sequence of a tombstone
+     * @param tombstone Tombstone number (0 to getTombstoneCount() - 1)
+     * @return Sequence of the deletion
+     */
+    long tombstoneSequenceAt(int tombstone) {
+        return tombstones.getLong(tombstoneOffset(tombstone) + DELETED_SEQUENCE_OFFSET);
+    }
+
+    /**
+     * Finds the record number of a contact ID through the hash index
+     * Most missing IDs are ruled out by the ID filter without touching the index.
+     * @param contactId The ID to find
+     * @return The record number, or -1 if the ID is not in the snapshot
+     */
+    public int indexOf(String contactId) {
+        if (!idFilter.mightContain(contactId)) {
+            return -1;
+        }
+
+        int slot = spread(contactId.hashCode()) & slotMask;
+        while (true) {
+            int entry = index.getInt(slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (idEquals(entry - 1, contactId)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * Decodes the contact ID of a record
+     * @param record Record number (0 to size - 1)
+     * @return The contact ID
+     */
+    public String contactIdAt(int record) {
+        return readString(segment(record), offset(record) + ID_OFFSET);
+    }
+
+    /**
+     * Decodes a full contact
+     * @param record Record number (0 to size - 1)
+     * @return A new Contact holding the record's fields
+     */
+    public Contact contactAt(int record) {
+        return readRecord(segment(record), offset(record));
+    }
+
+    /**
+     * Encodes a contact as one fixed-size record
+     * @param buffer Destination buffer
+     * @param offset Position of the record in the buffer
+     * @param contact The contact to encode
+     */
+    static void writeRecord(ByteBuffer buffer, int offset, Contact contact) {
+        writeString(buffer, offset + ID_OFFSET, contact.getContactId(), ID_CHARS);
+        writeString(buffer, offset + FIRST_NAME_OFFSET, contact.getFirstName(), NAME_CHARS);
+        writeString(buffer, offset + LAST_NAME_OFFSET, contact.getLastName(), NAME_CHARS);
+        buffer.putLong(offset + PHONE_OFFSET, contact.getPackedPhone());
+        writeString(buffer, offset + ADDRESS_OFFSET, contact.getAddress(), ADDRESS_CHARS);
+        buffer.putLong(offset + CREATED_AT_OFFSET, contact.getCreatedAt());
+    }
+
+    /**
+     * Decodes one fixed-size record
+     * @param buffer Source buffer
+     * @param offset Position of the record in the buffer
+     * @return A new Contact holding the record's fields
+     */
+    static Contact readRecord(ByteBuffer buffer, int offset) {
+        Contact contact = new Contact(
+                readString(buffer, offset + ID_OFFSET),
+                readString(buffer, offset + FIRST_NAME_OFFSET),
+                readString(buffer, offset + LAST_NAME_OFFSET),
+                buffer.getLong(offset + PHONE_OFFSET),
+                readString(buffer, offset + ADDRESS_OFFSET));
+        contact.setCreatedAt(buffer.getLong(offset + CREATED_AT_OFFSET));
+        return contact;
+    }
+
+    private boolean idEquals(int record, String contactId) {
+        ByteBuffer segment = segment(record);
+        int offset = offset(record) + ID_OFFSET;
+
+        int length = segment.get(offset);
+        if (length != contactId.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (segment.getChar(offset + 1 + i * 2) != contactId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer segment(int record) {
+        if (record < 0 || record >= size) {
+            throw new IllegalArgumentException("Record out of range: " + record);
+        }
+        return segments[record >>> SEGMENT_SHIFT];
+    }
+
+    private static int offset(int record) {
+        return (record & SEGMENT_MASK) * RECORD_SIZE;
+    }
+
+    private int tombstoneOffset(int tombstone) {
+        if (tombstone < 0 || tombstone >= tombstoneCount) {
+            throw new IllegalArgumentException("Tombstone out of range: " + tombstone);
+        }
+        return tombstone * TOMBSTONE_SIZE;
+    }
+
+    private static String readString(ByteBuffer segment, int offset) {
+        int length = segment.get(offset);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = segment.getChar(offset + 1 + i * 2);
+        }
+        return new String(chars);
+    }
+
+    private static void writeString(ByteBuffer buffer, int offset, String value, int maxChars) {
+        buffer.put(offset, (byte) value.length());
+        for (int i = 0; i < maxChars; i++) {
+            buffer.putChar(offset + 1 + i * 2, i < value.length() ? value.charAt(i) : 0);
+        }
+    }
+
+    private static int slotCount(int size) {
+        // At most half full so probes stay short
+        long slots = Long.highestOneBit(Math.max(1L, (long) size * 2 - 1)) << 1;
+        if (slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("Too many contacts for one snapshot: " + size);
+        }
+        return (int) slots;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
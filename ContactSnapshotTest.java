@@ -0,0 +1,191 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for ContactSnapshot and snapshot-backed ContactService
+ * Tests all requirements:
+ * 1. Contacts round-trip through a snapshot file
+ * 2. IDs are found through the on-disk index
+ * 3. A service opened from a snapshot serves contacts before hydration
+ * 4. Writes go to an overlay on top of the snapshot
+ * 5. A failed write leaves the previous snapshot in place
+ */
+public class ContactSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ContactService serviceWithContacts(int count) {
+        ContactService service = new ContactService();
+        for (int i = 0; i < count; i++) {
+            service.addContact(new Contact("c" + i, "First" + i % 10, "Last", "555" + String.format("%07d", i), i + " Oak St"));
+        }
+        return service;
+    }
+
+    // Snapshot File Tests
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        Contact contact = new Contact("1234567890", "JohnJohnJo", "DoeDoeDoeD", "0551234567", "123456789012345678901234567890");
+        ContactSnapshot.write(Collections.singletonList(contact), file);
+
+        ContactSnapshot snapshot = ContactSnapshot.open(file);
+        assertEquals(1, snapshot.size());
+
+        int record = snapshot.indexOf("1234567890");
+        assertEquals(0, record);
+        assertEquals("1234567890", snapshot.contactIdAt(record));
+
+        Contact decoded = snapshot.contactAt(record);
+        assertEquals("JohnJohnJo", decoded.getFirstName());
+        assertEquals("DoeDoeDoeD", decoded.getLastName());
+        assertEquals("0551234567", decoded.getPhone());
+        assertEquals("123456789012345678901234567890", decoded.getAddress());
+    }
+
+    @Test
+    public void testSnapshotIndexLookup() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        serviceWithContacts(5000).saveSnapshot(file);
+
+        ContactSnapshot snapshot = ContactSnapshot.open(file);
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("c" + i, snapshot.contactIdAt(snapshot.indexOf("c" + i)));
+        }
+        assertEquals(-1, snapshot.indexOf("missing"));
+        assertEquals(-1, snapshot.indexOf(null));
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        Path file = tempDir.resolve("empty.snap");
+        ContactSnapshot.write(Collections.emptyList(), file);
+
+        ContactSnapshot snapshot = ContactSnapshot.open(file);
+        assertEquals(0, snapshot.size());
+        assertEquals(-1, snapshot.indexOf("1"));
+    }
+
+    @Test
+    public void testOpenInvalidFile() throws IOException {
+        Path file = tempDir.resolve("bogus.snap");
+        Files.write(file, Arrays.asList("not a snapshot"));
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            ContactSnapshot.open(file);
+        });
+    }
+
+    @Test
+    public void testFailedWriteKeepsPreviousSnapshot() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        serviceWithContacts(3).saveSnapshot(file);
+
+        Map<String, Long> tombstones = Collections.singletonMap("gone", 0L);
+        assertThrows(IllegalStateException.class, () -> {
+            ContactSnapshot.write(Collections.emptyList(), contactId -> {
+                throw new IllegalStateException("No sequence for " + contactId);
+            }, tombstones, new ContactHistory(), 1, 0, file);
+        });
+
+        assertEquals(3, ContactSnapshot.open(file).size());
+        assertFalse(Files.exists(tempDir.resolve("contacts.snap.tmp")));
+    }
+
+    // Snapshot-Backed Service Tests
+    @Test
+    public void testServiceServesSnapshotContacts() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        serviceWithContacts(100).saveSnapshot(file);
+
+        try (ContactService service = new ContactService(ContactSnapshot.open(file))) {
+            assertEquals(100, service.getContactCount());
+            assertTrue(service.contactExists("c42"));
+            assertFalse(service.contactExists("missing"));
+            assertEquals("42 Oak St", service.getContact("c42").getAddress());
+        }
+    }
+
+    @Test
+    public void testServiceWritesGoToOverlay() throws IOException {
+        Path file = tempDir.resolve("contacts.snap");
+        serviceWithContacts(10).saveSnapshot(file);
+
+        try (ContactService service = new ContactService(ContactSnapshot.open(file))) {
+            service.updateFirstName("c1", "Updated");
+            service.deleteContact("c2");
+            service.addContact(new Contact("new", "John", "Doe", "5551234567", "1 Main St"));
+
+            assertThrows(IllegalArgumentException.class, () -> {
+                service.addContact(new Contact("c3", "John", "Doe", "5551234567", "1 Main St"));
+            });
+
+            assertEquals("Updated", service.getContact("c1").getFirstName());
+            assertFalse(service.contactExists("c2"));
+            assertTrue(service.contactExists("new"));
+            assertEquals(10, service.getContactCount());
+
+            // Re-adding a deleted snapshot contact takes the new values
+            service.addContact(new Contact("c2", "Again", "Doe", "5551234567", "1 Main St"));
+            assertEquals("Again", service.getContact("c2").getFirstName());
+        }
+
+        // The snapshot file is unchanged
+        assertEquals("First1", ContactSnapshot.open(file).contactAt(ContactSnapshot.open(file).indexOf("c1")).getFirstName());
+    }
+
+    @Test
+    public void testServiceHydratesInBackground() throws IOException, InterruptedException {
+        Path file = tempDir.resolve("contacts.snap");
+        serviceWithContacts(5000).saveSnapshot(file);
+
+        try (ContactService service = new ContactService(ContactSnapshot.open(file))) {
+            service.deleteContact("c7");
+
+            for (int i = 0; i < 500 && service.getUnhydratedCount() > 0; i++) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(0, service.getUnhydratedCount());
+            assertEquals(4999, service.getContactCount());
+            assertFalse(service.contactExists("c7"));
+        }
+    }
+
+    @Test
+    public void testSnapshotOfSnapshotService() throws IOException {
+        Path first = tempDir.resolve("first.snap");
+        Path second = tempDir.resolve("second.snap");
+        serviceWithContacts(50).saveSnapshot(first);
+
+        try (ContactService service = new ContactService(ContactSnapshot.open(first))) {
+            service.deleteContact("c0");
+            service.updateAddress("c1", "1 Pine St");
+            service.saveSnapshot(second);
+        }
+
+        try (ContactService service = new ContactService(ContactSnapshot.open(second))) {
+            assertEquals(49, service.getContactCount());
+            assertFalse(service.contactExists("c0"));
+            assertEquals("1 Pine St", service.getContact("c1").getAddress());
+            assertEquals(1, service.query(new ContactQuery().where(ContactField.ADDRESS, "1 Pine St"::equals)).size());
+        }
+    }
+
+    @Test
+    public void testNullSnapshot() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ContactService((ContactSnapshot) null);
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package contactservice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * ContactSpillFile class storing evicted contacts in a local temporary file
+ * Contacts use the fixed-size ContactSnapshot record format, one per slot.
+ * Slots freed when a contact is read back are reused by later writes. The
+ * file is deleted when closed.
+ */
+class ContactSpillFile {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(ContactSnapshot.RECORD_SIZE);
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotCount;
+
+    /**
+     * Constructor creates an empty spill file in the system temporary directory
+     * @throws UncheckedIOException if the file cannot be created
+     */
+    ContactSpillFile() {
+        try {
+            Path file = Files.createTempFile("contacts", ".spill");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create contact spill file", e);
+        }
+    }
+
+    /**
+     * Writes a contact to a free slot
+     * @param contact The contact to write
+     * @return The slot holding the contact
+     * @throws UncheckedIOException if the write fails
+     */
+    int write(Contact contact) {
+        int slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+
+        ContactSnapshot.writeRecord(buffer, 0, contact);
+        buffer.clear();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position(slot) + buffer.position());
+            }
+        } catch (IOException e) {
+            freeSlots.push(slot);
+            throw new UncheckedIOException("Cannot write contact spill file", e);
+        }
+        return slot;
+    }
+
+    /**
+     * Reads a contact from a slot without freeing it
+     * @param slot Slot returned by write
+     * @return A new Contact holding the slot's fields
+     * @throws UncheckedIOException if the read fails
+     */
+    Contact read(int slot) {
+        buffer.clear();
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position(slot) + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of spill file");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read contact spill file", e);
+        }
+        return ContactSnapshot.readRecord(buffer, 0);
+    }
+
+    /**
+     * Marks a slot as reusable
+     * @param slot Slot returned by write
+     */
+    void free(int slot) {
+        freeSlots.push(slot);
+    }
+
+    /**
+     * Closes and deletes the spill file
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close contact spill file", e);
+        }
+    }
+
+    private static long position(int slot) {
+        return (long) slot * ContactSnapshot.RECORD_SIZE;
+    }
+}
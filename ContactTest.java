@@ -209,6 +209,40 @@ public class ContactTest {
         });
     }
 
+    @Test
+    public void testPackedPhoneOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new Contact("123", "John", "Doe", -5L, "123 Main St");
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new Contact("123", "John", "Doe", 10_000_000_000L, "123 Main St");
+        });
+    }
+
+    @Test
+    public void testHasPhoneComparesPackedForm() {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        assertTrue(contact.hasPhone(PhoneNumber.parse("(555) 123 4567")));
+        assertFalse(contact.hasPhone(PhoneNumber.parse("555-123-4568")));
+        assertFalse(contact.hasPhone(null));
+    }
+
+    @Test
+    public void testSetPhoneNumberNull() {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        assertThrows(IllegalArgumentException.class, () -> {
+            contact.setPhoneNumber(null);
+        });
+    }
+
+    @Test
+    public void testSetPhoneNumberValid() {
+        Contact contact = new Contact("123", "John", "Doe", "5551234567", "123 Main St");
+        contact.setPhoneNumber(PhoneNumber.parse("555-987-6543"));
+        assertEquals("5559876543", contact.getPhone());
+        assertEquals(PhoneNumber.parse("5559876543"), contact.getPhoneNumber());
+    }
+
     // Address Tests
     @Test
     public void testAddressNull() {
@@ -0,0 +1,143 @@
+package contactservice;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * ContactWriteBehind class coalescing pending backend writes per contact
+ * Requirements:
+ * - Track at most one pending write per contact ID, however many changes arrive
+ * - Flush a contact once it has been pending for the window, or when more
+ *   than the size limit of contacts are pending (oldest first)
+ * - Flush the contact's state at flush time as a single record
+ * - Count received changes, backend writes and failed backend writes
+ *
+ * Backend failures never reach the caller that made the change: the contact
+ * stays pending, the failure is counted and the flush stops until the next
+ * one, so the stage may grow past its size limit while the backend is down.
+ */
+class ContactWriteBehind {
+    private final ContactBackend backend;
+    private final long windowMillis;
+    private final int maxPending;
+    private final Map<String, Long> pending = new LinkedHashMap<>();  // ID to first change time, oldest first
+
+    private long received;
+    private long written;
+    private long failed;
+
+    /**
+     * Constructor for ContactWriteBehind object
+     * @param backend Backend receiving the coalesced records (not null)
+     * @param windowMillis How long a change may stay pending (must not be negative)
+     * @param maxPending Most contacts allowed to be pending (must be positive)
+     * @throws IllegalArgumentException if any parameter violates requirements
+     */
+    ContactWriteBehind(ContactBackend backend, long windowMillis, int maxPending) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Backend cannot be null");
+        }
+
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Write-behind window cannot be negative");
+        }
+
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("Write-behind size limit must be positive");
+        }
+
+        this.backend = backend;
+        this.windowMillis = windowMillis;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Records a change to a contact, merging it with any pending write
+     * @param contactId The ID of the changed contact
+     * @param now Current time in milliseconds
+     * @param current Resolves a contact ID to its current state, or null if deleted
+     */
+    void changed(String contactId, long now, Function<String, Contact> current) {
+        received++;
+        pending.putIfAbsent(contactId, now);
+
+        while (pending.size() > maxPending) {
+            if (!flushOldest(current)) {
+                return;
+            }
+        }
+        flushExpired(now, current);
+    }
+
+    /**
+     * Flushes contacts that have been pending for at least the window
+     * @param now Current time in milliseconds
+     * @param current Resolves a contact ID to its current state, or null if deleted
+     */
+    void flushExpired(long now, Function<String, Contact> current) {
+        Iterator<Map.Entry<String, Long>> oldest = pending.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            if (now - entry.getValue() < windowMillis || !write(entry.getKey(), current)) {
+                break;
+            }
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Flushes every pending contact, stopping at the first backend failure
+     * @param current Resolves a contact ID to its current state, or null if deleted
+     */
+    void flushAll(Function<String, Contact> current) {
+        while (!pending.isEmpty()) {
+            if (!flushOldest(current)) {
+                return;
+            }
+        }
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    long getReceivedCount() {
+        return received;
+    }
+
+    long getWrittenCount() {
+        return written;
+    }
+
+    long getFailedCount() {
+        return failed;
+    }
+
+    private boolean flushOldest(Function<String, Contact> current) {
+        String contactId = pending.keySet().iterator().next();
+        if (!write(contactId, current)) {
+            return false;
+        }
+        pending.remove(contactId);
+        return true;
+    }
+
+    // A failing call leaves the contact pending so the next flush retries it
+    private boolean write(String contactId, Function<String, Contact> current) {
+        try {
+            Contact contact = current.apply(contactId);
+            if (contact == null) {
+                backend.delete(contactId);
+            } else {
+                backend.write(contact.copy());
+            }
+        } catch (RuntimeException e) {
+            failed++;
+            return false;
+        }
+        written++;
+        return true;
+    }
+}
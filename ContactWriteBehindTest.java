@@ -0,0 +1,297 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the ContactService write-behind stage
+ * Tests all requirements:
+ * 1. Bursts of updates to one contact reach the backend as one record
+ * 2. Pending writes flush after the window or beyond the size limit
+ * 3. In-process reads see changes before they are flushed
+ * 4. Deletes reach the backend as deletes
+ * 5. Backend failures are counted and retried, never thrown to the caller
+ * 6. Flushes leave spilled contacts on disk
+ */
+public class ContactWriteBehindTest {
+
+    private ContactService contactService;
+    private List<Contact> written;
+    private List<String> deleted;
+    private boolean backendDown;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        written = new ArrayList<>();
+        deleted = new ArrayList<>();
+
+        contactService = new ContactService();
+        contactService.setClock(() -> now);
+        contactService.addContact(new Contact("1", "John", "Doe", "5551234567", "123 Main St"));
+        contactService.addContact(new Contact("2", "Jane", "Smith", "5559876543", "456 Oak Ave"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        backendDown = false;
+        contactService.close();
+    }
+
+    private void enableWriteBehind(long windowMillis, int maxPending) {
+        contactService.setWriteBehind(new ContactBackend() {
+            @Override
+            public void write(Contact contact) {
+                if (backendDown) {
+                    throw new IllegalStateException("backend down");
+                }
+                written.add(contact);
+            }
+
+            @Override
+            public void delete(String contactId) {
+                if (backendDown) {
+                    throw new IllegalStateException("backend down");
+                }
+                deleted.add(contactId);
+            }
+        }, windowMillis, maxPending);
+    }
+
+    // Coalescing Tests
+    @Test
+    public void testBurstOfUpdatesCoalesced() {
+        enableWriteBehind(60000, 100);
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.updateLastName("1", "Doeson");
+        contactService.updatePhone("1", "5551111111");
+        contactService.updateAddress("1", "111 New St");
+
+        assertTrue(written.isEmpty());
+        assertEquals(1, contactService.getPendingWriteCount());
+
+        contactService.flushWrites();
+
+        assertEquals(1, written.size());
+        Contact record = written.get(0);
+        assertEquals("Johnny", record.getFirstName());
+        assertEquals("Doeson", record.getLastName());
+        assertEquals("5551111111", record.getPhone());
+        assertEquals("111 New St", record.getAddress());
+        assertEquals(4, contactService.getReceivedWriteCount());
+        assertEquals(1, contactService.getBackendWriteCount());
+    }
+
+    @Test
+    public void testFlushedRecordIsDetached() {
+        enableWriteBehind(60000, 100);
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.flushWrites();
+        contactService.updateFirstName("1", "Jack");
+
+        assertEquals("Johnny", written.get(0).getFirstName());
+    }
+
+    @Test
+    public void testReadYourWrites() {
+        enableWriteBehind(60000, 100);
+
+        contactService.updateFirstName("1", "Johnny");
+
+        assertEquals("Johnny", contactService.getContact("1").getFirstName());
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    public void testDeleteFlushedAsDelete() {
+        enableWriteBehind(60000, 100);
+
+        contactService.updateFirstName("2", "Janet");
+        contactService.deleteContact("2");
+        contactService.flushWrites();
+
+        assertTrue(written.isEmpty());
+        assertEquals(1, deleted.size());
+        assertEquals("2", deleted.get(0));
+    }
+
+    // Window and Size Limit Tests
+    @Test
+    public void testWindowExpiryFlushes() {
+        enableWriteBehind(100, 100);
+
+        contactService.updateFirstName("1", "Johnny");
+        now += 50;
+        contactService.updateFirstName("2", "Janet");
+        assertTrue(written.isEmpty());
+
+        now += 50;
+        contactService.updateLastName("2", "Smithers");
+
+        // Only contact 1 has been pending for the full window
+        assertEquals(1, written.size());
+        assertEquals("1", written.get(0).getContactId());
+        assertEquals(1, contactService.getPendingWriteCount());
+    }
+
+    @Test
+    public void testSizeLimitFlushesOldest() {
+        enableWriteBehind(60000, 1);
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.updateFirstName("1", "Jack");
+        assertTrue(written.isEmpty());
+
+        contactService.updateFirstName("2", "Janet");
+
+        assertEquals(1, written.size());
+        assertEquals("Jack", written.get(0).getFirstName());
+        assertEquals(1, contactService.getPendingWriteCount());
+    }
+
+    @Test
+    public void testZeroWindowWritesThrough() {
+        enableWriteBehind(0, 100);
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.updateFirstName("1", "Jack");
+
+        assertEquals(2, written.size());
+        assertEquals(0, contactService.getPendingWriteCount());
+    }
+
+    @Test
+    public void testCloseFlushesPendingWrites() {
+        enableWriteBehind(60000, 100);
+
+        contactService.addContact(new Contact("3", "Bob", "Johnson", "5555555555", "789 Pine St"));
+        contactService.close();
+
+        assertEquals(1, written.size());
+        assertEquals("3", written.get(0).getContactId());
+    }
+
+    @Test
+    public void testDisableWriteBehindFlushes() {
+        enableWriteBehind(60000, 100);
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.disableWriteBehind();
+        contactService.updateFirstName("1", "Jack");
+
+        assertEquals(1, written.size());
+        assertEquals(0, contactService.getPendingWriteCount());
+    }
+
+    @Test
+    public void testFlushLeavesSpilledContactsOnDisk() {
+        contactService.setMemoryBudget(1, MemoryPolicy.SPILL);
+        enableWriteBehind(60000, 100);
+        for (int i = 0; i < 5; i++) {
+            contactService.addContact(new Contact("c" + i, "First" + i, "Last", "5551234567", i + " Oak St"));
+        }
+        contactService.getContact("c2");
+        int spilledBefore = contactService.getSpilledCount();
+        long inMemory = contactService.getEstimatedFootprint("c2");
+
+        contactService.flushWrites();
+
+        // Flushing reads spilled contacts without bringing them back or evicting c2
+        assertEquals(5, written.size());
+        assertEquals("First0", written.get(0).getFirstName());
+        assertEquals(spilledBefore, contactService.getSpilledCount());
+        assertEquals(inMemory, contactService.getEstimatedFootprint("c2"));
+    }
+
+    // Backend Failure Tests
+    @Test
+    public void testBackendFailureDoesNotFailTheChange() {
+        enableWriteBehind(0, 100);
+        backendDown = true;
+
+        contactService.updateFirstName("1", "Jack");
+        contactService.deleteContact("2");
+
+        assertEquals("Jack", contactService.getContact("1").getFirstName());
+        assertEquals(2, contactService.getPendingWriteCount());
+        assertEquals(2, contactService.getFailedWriteCount());
+        assertEquals(0, contactService.getBackendWriteCount());
+
+        backendDown = false;
+        contactService.flushWrites();
+
+        assertEquals("Jack", written.get(0).getFirstName());
+        assertEquals("2", deleted.get(0));
+        assertEquals(0, contactService.getPendingWriteCount());
+        assertEquals(2, contactService.getBackendWriteCount());
+    }
+
+    @Test
+    public void testBackendFailureOnSizeLimit() {
+        enableWriteBehind(60000, 1);
+        backendDown = true;
+
+        contactService.updateFirstName("1", "Johnny");
+        contactService.updateFirstName("2", "Janet");
+
+        // The stage grows past its limit rather than drop or throw
+        assertEquals(2, contactService.getPendingWriteCount());
+        assertEquals(1, contactService.getFailedWriteCount());
+
+        backendDown = false;
+        contactService.updateLastName("2", "Smithers");
+
+        assertEquals(1, written.size());
+        assertEquals("1", written.get(0).getContactId());
+        assertEquals(1, contactService.getPendingWriteCount());
+    }
+
+    @Test
+    public void testDisableKeepsUndeliveredWrites() {
+        enableWriteBehind(60000, 100);
+        contactService.updateFirstName("1", "Johnny");
+        backendDown = true;
+
+        assertThrows(IllegalStateException.class, () -> {
+            contactService.disableWriteBehind();
+        });
+        assertEquals(1, contactService.getPendingWriteCount());
+
+        backendDown = false;
+        contactService.disableWriteBehind();
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    public void testCloseReportsUndeliveredWrites() {
+        enableWriteBehind(60000, 100);
+        contactService.updateFirstName("1", "Johnny");
+        backendDown = true;
+
+        assertThrows(IllegalStateException.class, () -> {
+            contactService.close();
+        });
+        assertEquals(1, contactService.getFailedWriteCount());
+    }
+
+    @Test
+    public void testInvalidWriteBehindSettings() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            contactService.setWriteBehind(null, 100, 10);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            enableWriteBehind(-1, 10);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            enableWriteBehind(100, 0);
+        });
+    }
+}
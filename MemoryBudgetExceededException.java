@@ -0,0 +1,18 @@
+package contactservice;
+
+/**
+ * MemoryBudgetExceededException thrown when a contact cannot be added within the memory budget
+ * Distinct from IllegalArgumentException: the contact itself is valid, the
+ * service is full.
+ */
+public class MemoryBudgetExceededException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for MemoryBudgetExceededException object
+     * @param message Description of the budget that was exceeded
+     */
+    public MemoryBudgetExceededException(String message) {
+        super(message);
+    }
+}
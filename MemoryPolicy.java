@@ -0,0 +1,12 @@
+package contactservice;
+
+/**
+ * MemoryPolicy enum choosing what ContactService does when its memory budget is reached
+ */
+public enum MemoryPolicy {
+    /** Reject new contacts with a MemoryBudgetExceededException */
+    REJECT,
+
+    /** Move the least recently used contacts to a local spill file */
+    SPILL
+}
@@ -0,0 +1,214 @@
+package contactservice;
+
+/**
+ * PhoneNumber class representing a ten-digit phone number packed into a long
+ * Requirements:
+ * - Exactly 10 digits, stored as a primitive long (not a String)
+ * - Parse common formats ("555-123-4567", "(555) 123 4567", "+1 555.123.4567")
+ *   without regexes or intermediate allocations
+ * - Fast equality and hashing on the packed value
+ */
+public final class PhoneNumber {
+    private static final int DIGITS = 10;
+    private static final long LIMIT = 10_000_000_000L;
+
+    private final long value;
+
+    /**
+     * Constructor for PhoneNumber object from its packed form
+     * @param value Packed phone number (0 to 9999999999)
+     * @throws IllegalArgumentException if the value is not a ten-digit number
+     */
+    public PhoneNumber(long value) {
+        if (!isValid(value)) {
+            throw new IllegalArgumentException("Phone number must be exactly 10 digits");
+        }
+        this.value = value;
+    }
+
+    /**
+     * Checks whether a value is a valid packed phone number
+     * @param packed Value to check
+     * @return true if the value is 0 to 9999999999, false otherwise
+     */
+    static boolean isValid(long packed) {
+        return packed >= 0 && packed < LIMIT;
+    }
+
+    /**
+     * Parses a formatted phone number
+     * @param text Phone number with optional separators and country code
+     * @return The parsed PhoneNumber
+     * @throws IllegalArgumentException if the text is not a valid phone number
+     */
+    public static PhoneNumber parse(CharSequence text) {
+        return new PhoneNumber(pack(text));
+    }
+
+    /**
+     * Parses a formatted phone number into its packed form without allocating
+     * Spaces, dashes, dots and parentheses are ignored, and a leading "+1" or
+     * "1" country code is dropped when eleven digits are present.
+     * @param text Phone number with optional separators and country code
+     * @return Packed phone number
+     * @throws IllegalArgumentException if the text is not a valid phone number
+     */
+    public static long pack(CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Phone number cannot be null");
+        }
+
+        long packed = 0;
+        int digits = 0;
+        int length = text.length();
+        int i = 0;
+
+        if (length > 0 && text.charAt(0) == '+') {
+            i++;
+        }
+
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > DIGITS + 1) {
+                    break;
+                }
+                packed = packed * 10 + (c - '0');
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')') {
+                throw new IllegalArgumentException("Phone number contains invalid character: " + c);
+            }
+        }
+
+        // Eleven digits are only valid with a leading country code of 1
+        if (digits == DIGITS + 1 && packed / LIMIT == 1) {
+            return packed - LIMIT;
+        }
+
+        if (digits != DIGITS) {
+            throw new IllegalArgumentException("Phone number must be exactly 10 digits");
+        }
+
+        return packed;
+    }
+
+    /**
+     * Packs a phone number given as exactly ten raw digits
+     * @param digits Phone number of exactly 10 digits
+     * @return Packed phone number
+     * @throws IllegalArgumentException if the text is not exactly 10 digits
+     */
+    public static long packDigits(CharSequence digits) {
+        if (digits == null || digits.length() != DIGITS) {
+            throw new IllegalArgumentException("Phone number cannot be null and must be exactly 10 digits");
+        }
+
+        long packed = 0;
+        for (int i = 0; i < DIGITS; i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Phone number cannot be null and must be exactly 10 digits");
+            }
+            packed = packed * 10 + (c - '0');
+        }
+
+        return packed;
+    }
+
+    /**
+     * Returns the packed form of the phone number
+     * @return Packed phone number
+     */
+    public long toLong() {
+        return value;
+    }
+
+    /**
+     * Checks whether the phone number starts with the given digits
+     * @param prefix Leading digits to match (up to 10 digits)
+     * @return true if the phone number starts with the prefix, false otherwise
+     */
+    public boolean startsWith(CharSequence prefix) {
+        return startsWith(value, prefix);
+    }
+
+    /**
+     * Checks whether a packed phone number starts with the given digits
+     * @param packed Packed phone number
+     * @param prefix Leading digits to match (up to 10 digits)
+     * @return true if the phone number starts with the prefix, false otherwise
+     */
+    public static boolean startsWith(long packed, CharSequence prefix) {
+        long expected = packPrefix(prefix);
+        return expected >= 0 && packed / prefixDivisor(prefix.length()) == expected;
+    }
+
+    /**
+     * Packs the leading digits of a phone number
+     * Callers matching many numbers against one prefix can pack it once and
+     * compare packed / prefixDivisor(length) against the result.
+     * @param prefix Leading digits (up to 10 digits)
+     * @return The digits as a number, or -1 if the prefix is too long or not digits
+     */
+    static long packPrefix(CharSequence prefix) {
+        int length = prefix.length();
+        if (length > DIGITS) {
+            return -1;
+        }
+
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = prefix.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            packed = packed * 10 + (c - '0');
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the divisor that reduces a packed phone number to its leading digits
+     * @param length Number of leading digits (0 to 10)
+     * @return 10 to the power of the remaining digits
+     */
+    static long prefixDivisor(int length) {
+        long divisor = 1;
+        for (int i = length; i < DIGITS; i++) {
+            divisor *= 10;
+        }
+        return divisor;
+    }
+
+    /**
+     * Formats a packed phone number as ten raw digits
+     * @param packed Packed phone number
+     * @return Phone number as exactly 10 digits
+     */
+    public static String format(long packed) {
+        char[] chars = new char[DIGITS];
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PhoneNumber && ((PhoneNumber) other).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    /**
+     * Returns the phone number as exactly ten raw digits
+     * @return Phone number digits
+     */
+    @Override
+    public String toString() {
+        return format(value);
+    }
+}
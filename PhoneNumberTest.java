@@ -0,0 +1,111 @@
+package contactservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for PhoneNumber class
+ * Tests all requirements:
+ * 1. Raw and formatted input parses to the same packed value
+ * 2. Invalid input is rejected
+ * 3. Equality, hashing and formatting use the packed value
+ */
+public class PhoneNumberTest {
+
+    // Parse Tests
+    @Test
+    public void testParseRawDigits() {
+        assertEquals(5551234567L, PhoneNumber.pack("5551234567"));
+    }
+
+    @Test
+    public void testParseCommonFormats() {
+        assertEquals(5551234567L, PhoneNumber.pack("555-123-4567"));
+        assertEquals(5551234567L, PhoneNumber.pack("(555) 123 4567"));
+        assertEquals(5551234567L, PhoneNumber.pack("555.123.4567"));
+        assertEquals(5551234567L, PhoneNumber.pack("+1 555 123 4567"));
+        assertEquals(5551234567L, PhoneNumber.pack("1-555-123-4567"));
+    }
+
+    @Test
+    public void testParseLeadingZero() {
+        PhoneNumber phone = PhoneNumber.parse("012-345-6789");
+
+        assertEquals(123456789L, phone.toLong());
+        assertEquals("0123456789", phone.toString());
+    }
+
+    @Test
+    public void testParseNull() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            PhoneNumber.parse(null);
+        });
+    }
+
+    @Test
+    public void testParseTooShort() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            PhoneNumber.parse("555-123-456");
+        });
+    }
+
+    @Test
+    public void testParseTooLong() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            PhoneNumber.parse("555-123-45678");
+        });
+
+        // Eleven digits are only accepted with a country code of 1
+        assertThrows(IllegalArgumentException.class, () -> {
+            PhoneNumber.parse("25551234567");
+        });
+    }
+
+    @Test
+    public void testParseWithLetters() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            PhoneNumber.parse("555-ABC-4567");
+        });
+    }
+
+    // Raw Digit Tests
+    @Test
+    public void testPackDigitsRejectsFormatting() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            PhoneNumber.packDigits("555-123-45");
+        });
+    }
+
+    @Test
+    public void testPackedValueOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PhoneNumber(-1);
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PhoneNumber(10_000_000_000L);
+        });
+    }
+
+    // Equality and Prefix Tests
+    @Test
+    public void testEqualityAcrossFormats() {
+        PhoneNumber raw = PhoneNumber.parse("5551234567");
+        PhoneNumber formatted = PhoneNumber.parse("(555) 123-4567");
+
+        assertEquals(raw, formatted);
+        assertEquals(raw.hashCode(), formatted.hashCode());
+        assertNotEquals(raw, PhoneNumber.parse("5559876543"));
+    }
+
+    @Test
+    public void testStartsWith() {
+        PhoneNumber phone = PhoneNumber.parse("5551234567");
+
+        assertTrue(phone.startsWith("555"));
+        assertTrue(phone.startsWith(""));
+        assertTrue(phone.startsWith("5551234567"));
+        assertFalse(phone.startsWith("556"));
+        assertFalse(phone.startsWith("55512345678"));
+    }
+}